@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Named;
+
+import org.glassfish.hk2.api.Injectee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Key;
+
+/**
+ * Measures {@link BindingUtils#toKey(Injectee)} and {@link BindingUtils#isNullable(Injectee)}.
+ * Both are being called for every injection point the bridge resolves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingUtilsBenchmark {
+  
+  private Injectee plain;
+  
+  private Injectee named;
+  
+  private Injectee nullable;
+  
+  private Injectee optional;
+  
+  @Setup
+  public void setUp() {
+    plain = Injectees.newFieldInjectee(Holder.class, "plain");
+    named = Injectees.newFieldInjectee(Holder.class, "named");
+    nullable = Injectees.newFieldInjectee(Holder.class, "nullable");
+    optional = Injectees.newFieldInjectee(Holder.class, "optional");
+  }
+  
+  @Benchmark
+  public Key<?> toKey() {
+    return BindingUtils.toKey(plain);
+  }
+  
+  @Benchmark
+  public Key<?> toKeyNamed() {
+    return BindingUtils.toKey(named);
+  }
+  
+  @Benchmark
+  public boolean isNullable() {
+    return BindingUtils.isNullable(plain);
+  }
+  
+  @Benchmark
+  public boolean isNullableAnnotated() {
+    return BindingUtils.isNullable(nullable);
+  }
+  
+  @Benchmark
+  public boolean isNullableOptional() {
+    return BindingUtils.isNullable(optional);
+  }
+  
+  public static class Holder {
+    
+    @javax.inject.Inject
+    String plain;
+    
+    @javax.inject.Inject
+    @Named("named")
+    String named;
+    
+    @javax.inject.Inject
+    @Nullable
+    String nullable;
+    
+    @com.google.inject.Inject(optional = true)
+    String optional;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+/**
+ * Measures {@link GuiceBindingDescriptor#create(org.glassfish.hk2.api.ServiceHandle)} 
+ * for the common kinds of {@link Binding}s.
+ * 
+ * @see GuiceDescriptorFactory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuiceBindingDescriptorBenchmark {
+  
+  private GuiceBindingDescriptor<?> unscoped;
+  
+  private GuiceBindingDescriptor<?> singleton;
+  
+  private GuiceBindingDescriptor<?> instance;
+  
+  private GuiceBindingDescriptor<?> linked;
+  
+  @Setup
+  public void setUp() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Unscoped.class);
+        bind(SingletonService.class).in(Singleton.class);
+        bind(Instance.class).toInstance(new Instance());
+        bind(Api.class).to(Unscoped.class);
+      }
+    });
+    
+    unscoped = newDescriptor(injector, Unscoped.class);
+    singleton = newDescriptor(injector, SingletonService.class);
+    instance = newDescriptor(injector, Instance.class);
+    linked = newDescriptor(injector, Api.class);
+  }
+  
+  @Benchmark
+  public Object unscoped() {
+    return unscoped.create(null);
+  }
+  
+  @Benchmark
+  public Object singleton() {
+    return singleton.create(null);
+  }
+  
+  @Benchmark
+  public Object instance() {
+    return instance.create(null);
+  }
+  
+  @Benchmark
+  public Object linked() {
+    return linked.create(null);
+  }
+  
+  private static <T> GuiceBindingDescriptor<T> newDescriptor(Injector injector, Class<T> type) {
+    Binding<T> binding = injector.getBinding(type);
+    return GuiceDescriptorFactory.newDescriptor(type, type, 
+        Collections.<Annotation>emptySet(), binding);
+  }
+  
+  public static interface Api {
+  }
+  
+  public static class Unscoped implements Api {
+  }
+  
+  public static class SingletonService {
+  }
+  
+  public static class Instance {
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.lang.reflect.Field;
+
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.utilities.InjecteeImpl;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
+
+/**
+ * Creates {@link Injectee}s the same way HK2 does for field injection points.
+ */
+class Injectees {
+  
+  private Injectees() {}
+  
+  /**
+   * Creates and returns an {@link Injectee} for the given field of the given class.
+   */
+  public static Injectee newFieldInjectee(Class<?> clazz, String name) {
+    Field field = null;
+    try {
+      field = clazz.getDeclaredField(name);
+    } catch (NoSuchFieldException err) {
+      throw new IllegalArgumentException("name=" + name, err);
+    }
+    
+    InjecteeImpl injectee = new InjecteeImpl(field.getGenericType());
+    injectee.setParent(field);
+    injectee.setPosition(-1);
+    injectee.setRequiredQualifiers(ReflectionHelper.getQualifierAnnotations(field));
+    return injectee;
+  }
+}
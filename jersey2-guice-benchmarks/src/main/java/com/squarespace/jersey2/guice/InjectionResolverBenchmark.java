@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.api.InjectionResolver;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.TypeLiteral;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Resolves the same field injection point with JSR-330's {@link javax.inject.Inject} 
+ * ({@link GuiceThreeThirtyResolver}) and with Guice's {@link com.google.inject.Inject} 
+ * ({@link GuiceInjectionResolver}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionResolverBenchmark {
+  
+  private ServiceLocator locator;
+  
+  private InjectionResolver<javax.inject.Inject> threeThirtyResolver;
+  
+  private InjectionResolver<com.google.inject.Inject> guiceResolver;
+  
+  private Injectee threeThirtyInjectee;
+  
+  private Injectee guiceInjectee;
+  
+  @Setup
+  public void setUp() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Service.class);
+      }
+    });
+    
+    locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    threeThirtyResolver = locator.getService(
+        new TypeLiteral<InjectionResolver<javax.inject.Inject>>() {}.getType());
+    
+    guiceResolver = locator.getService(
+        new TypeLiteral<InjectionResolver<com.google.inject.Inject>>() {}.getType());
+    
+    threeThirtyInjectee = Injectees.newFieldInjectee(Holder.class, "threeThirty");
+    guiceInjectee = Injectees.newFieldInjectee(Holder.class, "guice");
+  }
+  
+  @TearDown
+  public void tearDown() {
+    locator.shutdown();
+  }
+  
+  @Benchmark
+  public Object threeThirty() {
+    return threeThirtyResolver.resolve(threeThirtyInjectee, null);
+  }
+  
+  @Benchmark
+  public Object guice() {
+    return guiceResolver.resolve(guiceInjectee, null);
+  }
+  
+  public static class Service {
+  }
+  
+  public static class Holder {
+    
+    @javax.inject.Inject
+    Service threeThirty;
+    
+    @com.google.inject.Inject
+    Service guice;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Many threads create the same resource in a cold {@link ServiceLocator} at the 
+ * same time. The resource's dependencies are unknown to HK2 and they have to be 
+ * resolved just-in-time. That's what happens when a Jersey application starts 
+ * taking traffic. Every iteration starts with a new {@link ServiceLocator} and 
+ * the percentiles of the single shot times are the warm-up latencies.
+ * 
+ * NOTE: The just-in-time resolutions can only be coalesced if HK2 knows the 
+ * injectee class. That's the case for {@link ServiceLocator#createAndInitialize(Class)}
+ * but not for {@link ServiceLocator#getService(Class, java.lang.annotation.Annotation...)}.
+ * 
+ * @see LinkOptions#isCoalesceJustInTime()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 100)
+@Threads(8)
+@Fork(1)
+public class JustInTimeContentionBenchmark {
+  
+  @Param({ "false", "true" })
+  private boolean coalesce;
+  
+  private ServiceLocator locator;
+  
+  @Setup(Level.Iteration)
+  public void setUp() {
+    Injector injector = Guice.createInjector();
+    
+    LinkOptions options = LinkOptions.DEFAULT.withCoalesceJustInTime(coalesce);
+    locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), injector, options);
+  }
+  
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    locator.shutdown();
+  }
+  
+  @Benchmark
+  public void warmUp(Blackhole blackhole) {
+    blackhole.consume(locator.createAndInitialize(MyResource.class));
+  }
+  
+  /**
+   * A resource with several dependencies that have no explicit bindings.
+   */
+  public static class MyResource {
+    
+    private final T0 t0;
+    
+    private final T1 t1;
+    
+    @Inject
+    private T2 t2;
+    
+    @Inject
+    private T3 t3;
+    
+    @Inject
+    private T4 t4;
+    
+    @Inject
+    private T5 t5;
+    
+    @Inject
+    private T6 t6;
+    
+    @Inject
+    private T7 t7;
+    
+    @Inject
+    public MyResource(T0 t0, T1 t1) {
+      this.t0 = t0;
+      this.t1 = t1;
+    }
+  }
+  
+  public static class T0 {
+  }
+  
+  public static class T1 {
+  }
+  
+  public static class T2 {
+  }
+  
+  public static class T3 {
+  }
+  
+  public static class T4 {
+  }
+  
+  public static class T5 {
+  }
+  
+  public static class T6 {
+  }
+  
+  public static class T7 {
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.ConfigurationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Measures {@link GuiceJustInTimeResolver#justInTimeResolution(Injectee)} once it's warm.
+ * A hit is an {@link Injectee} whose resolution has already completed and a miss is an 
+ * {@link Injectee} that Guice can't resolve and that is being answered by the failure cache.
+ * 
+ * NOTE: A miss re-throws the cached {@link ConfigurationException}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JustInTimeResolverBenchmark {
+  
+  private ServiceLocator locator;
+  
+  private GuiceJustInTimeResolver resolver;
+  
+  private Injectee hitInjectee;
+  
+  private Injectee missInjectee;
+  
+  @Setup
+  public void setUp() {
+    Injector injector = Guice.createInjector();
+    
+    locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), injector);
+    resolver = new GuiceJustInTimeResolver(locator, injector);
+    
+    hitInjectee = Injectees.newFieldInjectee(Holder.class, "hit");
+    missInjectee = Injectees.newFieldInjectee(Holder.class, "miss");
+    
+    if (!resolver.justInTimeResolution(hitInjectee)) {
+      throw new IllegalStateException();
+    }
+    
+    miss();
+  }
+  
+  @TearDown
+  public void tearDown() {
+    locator.shutdown();
+  }
+  
+  @Benchmark
+  public boolean hit() {
+    return resolver.justInTimeResolution(hitInjectee);
+  }
+  
+  @Benchmark
+  public boolean miss() {
+    try {
+      return resolver.justInTimeResolution(missInjectee);
+    } catch (ConfigurationException expected) {
+      return false;
+    }
+  }
+  
+  public static class JustInTime {
+  }
+  
+  public static interface Unbound {
+  }
+  
+  public static class Holder {
+    
+    @javax.inject.Inject
+    JustInTime hit;
+    
+    @javax.inject.Inject
+    Unbound miss;
+  }
+}
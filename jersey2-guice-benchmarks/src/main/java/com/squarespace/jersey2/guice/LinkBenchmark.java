@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+
+/**
+ * Measures {@link JerseyGuiceUtils#link(ServiceLocator, Injector, LinkMode)} for 
+ * {@link Injector}s of different sizes and all {@link LinkMode}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBenchmark {
+  
+  @Param({ "100", "1000" })
+  private int bindings;
+  
+  @Param({ "SEQUENTIAL", "PARALLEL", "LAZY" })
+  private LinkMode mode;
+  
+  private Injector injector;
+  
+  @Setup
+  public void setUp() {
+    injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        for (int i = 0; i < bindings; i++) {
+          bind(String.class).annotatedWith(Names.named("name-" + i)).toInstance("value-" + i);
+        }
+      }
+    });
+  }
+  
+  @Benchmark
+  public ServiceLocator link() {
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, mode);
+    
+    locator.shutdown();
+    return locator;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.UriInfo;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.servlet.ServletModule;
+import com.google.inject.servlet.ServletScopes;
+
+/**
+ * Gets Jersey's {@link UriInfo} from Guice once per request. The {@link GuiceRequestScopeFilter} 
+ * puts it straight into Guice's request scope. Without it Guice's request scope is empty and 
+ * {@link JerseyGuiceModule} has to look it up in the {@link ServiceLocator}.
+ * 
+ * NOTE: Both benchmarks pay for entering a new request scope.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestScopeBenchmark {
+  
+  private static final Key<UriInfo> KEY = Key.get(UriInfo.class);
+  
+  private ServiceLocator locator;
+  
+  private Injector injector;
+  
+  private UriInfo uriInfo;
+  
+  private final Callable<UriInfo> getUriInfo = new Callable<UriInfo>() {
+    @Override
+    public UriInfo call() {
+      return injector.getInstance(KEY);
+    }
+  };
+  
+  @Setup
+  public void setUp() {
+    locator = JerseyGuiceUtils.newServiceLocator();
+    injector = Guice.createInjector(new JerseyGuiceModule(locator), new ServletModule());
+    
+    uriInfo = (UriInfo)Proxy.newProxyInstance(UriInfo.class.getClassLoader(), 
+        new Class<?>[] { UriInfo.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            throw new UnsupportedOperationException();
+          }
+        });
+    
+    ServiceLocatorUtilities.addOneConstant(injector.getInstance(ServiceLocator.class), 
+        uriInfo, null, UriInfo.class);
+  }
+  
+  @TearDown
+  public void tearDown() {
+    locator.shutdown();
+  }
+  
+  @Benchmark
+  public UriInfo guiceScope() throws Exception {
+    Map<Key<?>, Object> seed = Collections.<Key<?>, Object>singletonMap(KEY, uriInfo);
+    return ServletScopes.scopeRequest(getUriInfo, seed).call();
+  }
+  
+  @Benchmark
+  public UriInfo serviceLocator() throws Exception {
+    Map<Key<?>, Object> seed = Collections.<Key<?>, Object>emptyMap();
+    return ServletScopes.scopeRequest(getUriInfo, seed).call();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.extension.ServiceLocatorGenerator;
+import org.jvnet.hk2.external.generator.ServiceLocatorGeneratorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many {@link ServiceLocator}s per second {@link JerseyGuiceUtils#newServiceLocator()}
+ * can create. HK2's own {@link ServiceLocatorGeneratorImpl} is the baseline.
+ * 
+ * @see GuiceServiceLocatorPrototype
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceLocatorBenchmark {
+  
+  private final ServiceLocatorGenerator generator = new ServiceLocatorGeneratorImpl();
+  
+  @Benchmark
+  public ServiceLocator newServiceLocator() {
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    locator.shutdown();
+    return locator;
+  }
+  
+  @Benchmark
+  public ServiceLocator hk2() {
+    ServiceLocator locator = generator.create("hk2", null);
+    locator.shutdown();
+    return locator;
+  }
+}
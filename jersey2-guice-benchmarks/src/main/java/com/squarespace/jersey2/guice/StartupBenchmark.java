@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.squarespace.jersey2.guice.SyntheticInjectors.Kind;
+import com.squarespace.jersey2.guice.SyntheticInjectors.QualifierStyle;
+import com.squarespace.jersey2.guice.SyntheticInjectors.Shape;
+
+/**
+ * Measures how {@link JerseyGuiceUtils#link(ServiceLocator, Injector)} scales with the 
+ * size of the {@link Injector}. It reports the time and the allocated bytes of each phase
+ * for {@link SyntheticInjectors} of different sizes and exits with a non-zero status if 
+ * a phase regressed beyond the configured threshold compared to a baseline.
+ * 
+ * <pre>
+ * --sizes 1000,10000,100000    the number of bindings
+ * --contracts 1000             the number of distinct contracts
+ * --kinds INSTANCE,LINKED      the kinds of bindings (INSTANCE, LINKED, PROVIDER, UNTARGETTED)
+ * --qualifier NAMED            the style of qualifiers (NAMED, ANNOTATION)
+ * --excluded 0.1               the fraction of bindings in JerseyModules
+ * --depth 1                    the length of the Injector's parent chain
+ * --warmups 2                  the number of runs that are being discarded
+ * --runs 5                     the number of runs (the median is being reported)
+ * --output results.properties  where the results are being written to
+ * --baseline baseline.properties
+ * --timeThreshold 1.0          the tolerated time regression (1.0 = 2x)
+ * --bytesThreshold 0.1         the tolerated allocation regression
+ * </pre>
+ * 
+ * NOTE: The allocated bytes are the current thread's and the phases are single threaded.
+ * 
+ * @see com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)
+ */
+public class StartupBenchmark {
+  
+  private static final String GATHER_BINDINGS = "gatherBindings";
+  
+  private static final String TO_BINDERS = "toBinders";
+  
+  private static final String COMMIT = "commit";
+  
+  private static final String LINK = "link";
+  
+  private static final List<String> PHASES = Arrays.asList(GATHER_BINDINGS, TO_BINDERS, COMMIT, LINK);
+  
+  private static final String SHAPE = "shape";
+  
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN 
+      = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+  
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = parse(args);
+    
+    int[] sizes = toInts(get(options, "sizes", "1000,10000,100000"));
+    int warmups = Integer.parseInt(get(options, "warmups", "2"));
+    int runs = Integer.parseInt(get(options, "runs", "5"));
+    
+    Shape shape = Shape.DEFAULT
+        .withContracts(Integer.parseInt(get(options, "contracts", "1000")))
+        .withKinds(toKinds(get(options, "kinds", "INSTANCE,LINKED,PROVIDER,UNTARGETTED")))
+        .withQualifier(QualifierStyle.valueOf(get(options, "qualifier", "NAMED")))
+        .withExcluded(Double.parseDouble(get(options, "excluded", "0.1")))
+        .withDepth(Integer.parseInt(get(options, "depth", "1")));
+    
+    Properties results = new Properties();
+    results.setProperty(SHAPE, shape.toString());
+    
+    System.out.println("Shape: " + shape);
+    System.out.println(String.format("%10s %-16s %14s %16s %12s", 
+        "bindings", "phase", "time (us)", "allocated (B)", "B/binding"));
+    
+    for (int size : sizes) {
+      Injector injector = SyntheticInjectors.newInjector(size, shape);
+      
+      for (int i = 0; i < warmups; i++) {
+        run(injector);
+      }
+      
+      List<Map<String, Sample>> samples = new ArrayList<>();
+      for (int i = 0; i < runs; i++) {
+        samples.add(run(injector));
+      }
+      
+      for (String phase : PHASES) {
+        long nanos = median(samples, phase, true);
+        long bytes = median(samples, phase, false);
+        
+        results.setProperty(size + "." + phase + ".nanos", Long.toString(nanos));
+        results.setProperty(size + "." + phase + ".bytes", Long.toString(bytes));
+        
+        System.out.println(String.format("%10d %-16s %14d %16d %12d", 
+            size, phase, nanos / 1000L, bytes, size != 0 ? bytes / size : 0L));
+      }
+    }
+    
+    String output = options.get("output");
+    if (output != null) {
+      store(results, new File(output));
+    }
+    
+    String baseline = options.get("baseline");
+    if (baseline != null) {
+      double timeThreshold = Double.parseDouble(get(options, "timeThreshold", "1.0"));
+      double bytesThreshold = Double.parseDouble(get(options, "bytesThreshold", "0.1"));
+      
+      List<String> regressions = compare(load(new File(baseline)), results, timeThreshold, bytesThreshold);
+      if (!regressions.isEmpty()) {
+        for (String regression : regressions) {
+          System.err.println("REGRESSION: " + regression);
+        }
+        System.exit(1);
+      }
+      
+      System.out.println("No regressions compared to " + baseline);
+    }
+  }
+  
+  /**
+   * Runs all phases once and returns their {@link Sample}s.
+   */
+  private static Map<String, Sample> run(Injector injector) {
+    System.gc();
+    
+    Map<String, Sample> samples = new LinkedHashMap<>();
+    
+    Sample sample = Sample.start();
+    Map<Key<?>, Binding<?>> bindings = JerseyGuiceUtils.gatherBindings(injector);
+    samples.put(GATHER_BINDINGS, sample.stop());
+    
+    sample = Sample.start();
+    Set<GuiceBinder<?>> binders = JerseyGuiceUtils.toBinders(bindings);
+    samples.put(TO_BINDERS, sample.stop());
+    
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    try {
+      sample = Sample.start();
+      DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+      DynamicConfiguration dc = dcs.createDynamicConfiguration();
+      for (GuiceBinder<?> binder : binders) {
+        JerseyGuiceUtils.bind(locator, dc, binder);
+      }
+      dc.commit();
+      samples.put(COMMIT, sample.stop());
+    } finally {
+      locator.shutdown();
+    }
+    
+    locator = JerseyGuiceUtils.newServiceLocator();
+    try {
+      sample = Sample.start();
+      JerseyGuiceUtils.link(locator, injector);
+      samples.put(LINK, sample.stop());
+    } finally {
+      locator.shutdown();
+    }
+    
+    return samples;
+  }
+  
+  /**
+   * Returns the regressions of the current results compared to the baseline.
+   */
+  static List<String> compare(Properties baseline, Properties current, 
+      double timeThreshold, double bytesThreshold) {
+    
+    List<String> regressions = new ArrayList<>();
+    
+    String shape = baseline.getProperty(SHAPE);
+    if (shape != null && !shape.equals(current.getProperty(SHAPE))) {
+      regressions.add("The baseline has a different shape: " + shape);
+      return regressions;
+    }
+    
+    for (String key : current.stringPropertyNames()) {
+      String expected = baseline.getProperty(key);
+      if (expected == null || key.equals(SHAPE)) {
+        continue;
+      }
+      
+      double threshold = key.endsWith(".nanos") ? timeThreshold : bytesThreshold;
+      
+      long limit = (long)(Long.parseLong(expected) * (1.0 + threshold));
+      long actual = Long.parseLong(current.getProperty(key));
+      
+      if (actual > limit) {
+        regressions.add(key + ": " + actual + " > " + limit + " (baseline=" + expected + ")");
+      }
+    }
+    
+    return regressions;
+  }
+  
+  private static long median(List<Map<String, Sample>> samples, String phase, boolean nanos) {
+    long[] values = new long[samples.size()];
+    for (int i = 0; i < values.length; i++) {
+      Sample sample = samples.get(i).get(phase);
+      values[i] = nanos ? sample.nanos : sample.bytes;
+    }
+    
+    Arrays.sort(values);
+    return values[values.length / 2];
+  }
+  
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Expected --name value: " + Arrays.toString(args));
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+  
+  private static String get(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return value != null ? value : defaultValue;
+  }
+  
+  private static int[] toInts(String value) {
+    String[] tokens = value.split(",");
+    int[] dst = new int[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      dst[i] = Integer.parseInt(tokens[i].trim());
+    }
+    return dst;
+  }
+  
+  private static Kind[] toKinds(String value) {
+    String[] tokens = value.split(",");
+    Kind[] dst = new Kind[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      dst[i] = Kind.valueOf(tokens[i].trim());
+    }
+    return dst;
+  }
+  
+  private static Properties load(File file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+  
+  private static void store(Properties properties, File file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      properties.store(out, StartupBenchmark.class.getName());
+    }
+  }
+  
+  private static class Sample {
+    
+    private final long startNanos = System.nanoTime();
+    
+    private final long startBytes = allocatedBytes();
+    
+    private long nanos;
+    
+    private long bytes;
+    
+    public static Sample start() {
+      return new Sample();
+    }
+    
+    public Sample stop() {
+      nanos = System.nanoTime() - startNanos;
+      bytes = allocatedBytes() - startBytes;
+      return this;
+    }
+    
+    private static long allocatedBytes() {
+      return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import com.google.inject.util.Types;
+
+/**
+ * Generates synthetic {@link Injector}s of a configurable size and {@link Shape}.
+ * 
+ * The i-th binding's contract is {@code Contract<X>} where {@code X} is a unique type for
+ * each of the {@link Shape#getContracts()} contracts. The first binding of each contract
+ * is unqualified and all others have a unique qualifier of the {@link Shape#getQualifier()} 
+ * style.
+ * 
+ * NOTE: Guice doesn't allow qualified {@link Kind#UNTARGETTED} bindings. They bind a 
+ * concrete type of their own instead of one of the contracts and they're never qualified.
+ * 
+ * @see StartupBenchmark
+ */
+class SyntheticInjectors {
+  
+  /**
+   * The types that are being used as the digits of the type arguments.
+   */
+  private static final Class<?>[] DIGITS = { 
+    D0.class, D1.class, D2.class, D3.class, 
+    D4.class, D5.class, D6.class, D7.class 
+  };
+  
+  private SyntheticInjectors() {}
+  
+  /**
+   * The kinds of Guice bindings.
+   */
+  public static enum Kind {
+    
+    /**
+     * {@code bind(Contract<X>).toInstance(...)}
+     */
+    INSTANCE,
+    
+    /**
+     * {@code bind(Contract<X>).to(ContractImpl<X>)}
+     */
+    LINKED,
+    
+    /**
+     * {@code bind(Contract<X>).toProvider(...)}
+     */
+    PROVIDER,
+    
+    /**
+     * {@code bind(UntargettedImpl<X>)}
+     */
+    UNTARGETTED;
+  }
+  
+  /**
+   * The styles of qualifiers.
+   */
+  public static enum QualifierStyle {
+    
+    /**
+     * {@link com.google.inject.name.Named}
+     */
+    NAMED,
+    
+    /**
+     * {@link Synthetic}
+     */
+    ANNOTATION;
+  }
+  
+  /**
+   * An immutable description of a synthetic {@link Injector}.
+   */
+  public static final class Shape {
+    
+    /**
+     * The default {@link Shape}. All bindings are {@link Kind#INSTANCE} bindings of
+     * 4 contracts and the qualifiers are {@link QualifierStyle#NAMED}.
+     */
+    public static final Shape DEFAULT = new Shape(4, 
+        Arrays.asList(Kind.INSTANCE), QualifierStyle.NAMED, 0.0, 1);
+    
+    private final int contracts;
+    
+    private final List<Kind> kinds;
+    
+    private final QualifierStyle qualifier;
+    
+    private final double excluded;
+    
+    private final int depth;
+    
+    private Shape(int contracts, List<Kind> kinds, QualifierStyle qualifier, double excluded, int depth) {
+      if (contracts < 1 || kinds.isEmpty() || depth < 1) {
+        throw new IllegalArgumentException("contracts=" + contracts 
+            + ", kinds=" + kinds + ", depth=" + depth);
+      }
+      
+      if (qualifier == null) {
+        throw new NullPointerException("qualifier");
+      }
+      
+      this.contracts = contracts;
+      this.kinds = kinds;
+      this.qualifier = qualifier;
+      this.excluded = excluded;
+      this.depth = depth;
+    }
+    
+    /**
+     * Returns the number of distinct contracts.
+     */
+    public int getContracts() {
+      return contracts;
+    }
+    
+    public Shape withContracts(int contracts) {
+      return new Shape(contracts, kinds, qualifier, excluded, depth);
+    }
+    
+    /**
+     * Returns the {@link Kind}s of bindings. They're being used in a round-robin fashion.
+     */
+    public List<Kind> getKinds() {
+      return kinds;
+    }
+    
+    public Shape withKinds(Kind... kinds) {
+      return new Shape(contracts, Arrays.asList(kinds.clone()), qualifier, excluded, depth);
+    }
+    
+    /**
+     * Returns the {@link QualifierStyle} of the qualified bindings.
+     */
+    public QualifierStyle getQualifier() {
+      return qualifier;
+    }
+    
+    public Shape withQualifier(QualifierStyle qualifier) {
+      return new Shape(contracts, kinds, qualifier, excluded, depth);
+    }
+    
+    /**
+     * Returns the fraction of bindings that are declared in {@link JerseyModule}s.
+     */
+    public double getExcluded() {
+      return excluded;
+    }
+    
+    public Shape withExcluded(double excluded) {
+      return new Shape(contracts, kinds, qualifier, excluded, depth);
+    }
+    
+    /**
+     * Returns the length of the {@link Injector#getParent()} chain. The bindings are 
+     * spread evenly over it.
+     */
+    public int getDepth() {
+      return depth;
+    }
+    
+    public Shape withDepth(int depth) {
+      return new Shape(contracts, kinds, qualifier, excluded, depth);
+    }
+    
+    @Override
+    public String toString() {
+      return "contracts=" + contracts + ", kinds=" + kinds + ", qualifier=" + qualifier 
+          + ", excluded=" + excluded + ", depth=" + depth;
+    }
+  }
+  
+  /**
+   * Creates and returns an {@link Injector} with the given number of bindings and of
+   * the given {@link Shape}. The deepest {@link Injector} is being returned.
+   */
+  public static Injector newInjector(int size, Shape shape) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size=" + size);
+    }
+    
+    int depth = shape.getDepth();
+    
+    List<List<Integer>> levels = new ArrayList<>();
+    for (int i = 0; i < depth; i++) {
+      levels.add(new ArrayList<Integer>());
+    }
+    
+    for (int i = 0; i < size; i++) {
+      levels.get(i % depth).add(i);
+    }
+    
+    Injector injector = null;
+    for (List<Integer> level : levels) {
+      List<Integer> included = new ArrayList<>();
+      List<Integer> jersey = new ArrayList<>();
+      
+      for (Integer i : level) {
+        (isSelected(i, shape.getExcluded()) ? jersey : included).add(i);
+      }
+      
+      Module[] modules = { 
+        new IncludedModule(included, shape), 
+        new ExcludedModule(jersey, shape) 
+      };
+      
+      injector = (injector == null) 
+          ? Guice.createInjector(modules) 
+          : injector.createChildInjector(modules);
+    }
+    
+    return injector;
+  }
+  
+  /**
+   * Spreads the selected bindings evenly over the whole range.
+   */
+  private static boolean isSelected(int i, double fraction) {
+    return Math.floor((i + 1) * fraction) > Math.floor(i * fraction);
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static void configure(Binder binder, List<Integer> bindings, Shape shape) {
+    List<Kind> kinds = shape.getKinds();
+    
+    for (Integer i : bindings) {
+      Kind kind = kinds.get(i % kinds.size());
+      
+      if (kind == Kind.UNTARGETTED) {
+        binder.bind(Key.get(newType(UntargettedImpl.class, i)));
+        continue;
+      }
+      
+      int contract = i % shape.getContracts();
+      Type type = newType(Contract.class, contract);
+      
+      Key<Object> key = (Key<Object>)((i < shape.getContracts()) 
+          ? Key.get(type) 
+          : Key.get(type, newQualifier(shape.getQualifier(), i)));
+      
+      switch (kind) {
+        case INSTANCE:
+          binder.bind(key).toInstance(new ContractImpl<Object>());
+          break;
+        case LINKED:
+          binder.bind(key).to((Key<Object>)Key.get(newType(ContractImpl.class, contract)));
+          break;
+        case PROVIDER:
+          binder.bind(key).toProvider(new ContractProvider());
+          break;
+        default:
+          throw new IllegalArgumentException("kind=" + kind);
+      }
+    }
+  }
+  
+  /**
+   * Returns {@code rawType<X>} where {@code X} is a unique type for the given number.
+   */
+  private static Type newType(Class<?> rawType, int value) {
+    return Types.newParameterizedTypeWithOwner(SyntheticInjectors.class, rawType, toType(value));
+  }
+  
+  /**
+   * Turns the given number into a type. The digits are {@link #DIGITS} and the 
+   * numbers are being written as {@code Node<D1, Node<D2, D3>>}.
+   */
+  private static Type toType(int value) {
+    Type type = DIGITS[value % DIGITS.length];
+    value /= DIGITS.length;
+    
+    while (value > 0) {
+      type = Types.newParameterizedTypeWithOwner(SyntheticInjectors.class, 
+          Node.class, DIGITS[value % DIGITS.length], type);
+      value /= DIGITS.length;
+    }
+    
+    return type;
+  }
+  
+  private static Annotation newQualifier(QualifierStyle style, int value) {
+    switch (style) {
+      case NAMED:
+        return Names.named("binding-" + value);
+      case ANNOTATION:
+        return new SyntheticImpl(value);
+      default:
+        throw new IllegalArgumentException("style=" + style);
+    }
+  }
+  
+  private static class IncludedModule extends AbstractModule {
+    
+    private final List<Integer> bindings;
+    
+    private final Shape shape;
+    
+    public IncludedModule(List<Integer> bindings, Shape shape) {
+      this.bindings = bindings;
+      this.shape = shape;
+    }
+    
+    @Override
+    protected void configure() {
+      SyntheticInjectors.configure(binder(), bindings, shape);
+    }
+  }
+  
+  private static class ExcludedModule extends JerseyModule {
+    
+    private final List<Integer> bindings;
+    
+    private final Shape shape;
+    
+    public ExcludedModule(List<Integer> bindings, Shape shape) {
+      this.bindings = bindings;
+      this.shape = shape;
+    }
+    
+    @Override
+    protected void configure() {
+      SyntheticInjectors.configure(binder(), bindings, shape);
+    }
+  }
+  
+  /**
+   * A qualifier with a value.
+   */
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  public static @interface Synthetic {
+    int value();
+  }
+  
+  /**
+   * @see Names#named(String)
+   */
+  @SuppressWarnings("all")
+  private static class SyntheticImpl implements Synthetic, Serializable {
+    
+    private static final long serialVersionUID = 0;
+    
+    private final int value;
+    
+    public SyntheticImpl(int value) {
+      this.value = value;
+    }
+    
+    @Override
+    public int value() {
+      return value;
+    }
+    
+    @Override
+    public Class<? extends Annotation> annotationType() {
+      return Synthetic.class;
+    }
+    
+    @Override
+    public int hashCode() {
+      // This is specified in java.lang.Annotation.
+      return (127 * "value".hashCode()) ^ Integer.valueOf(value).hashCode();
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Synthetic)) {
+        return false;
+      }
+      
+      Synthetic other = (Synthetic)o;
+      return value == other.value();
+    }
+    
+    @Override
+    public String toString() {
+      return "@" + Synthetic.class.getName() + "(value=" + value + ")";
+    }
+  }
+  
+  public static interface Contract<T> {
+  }
+  
+  public static class ContractImpl<T> implements Contract<T> {
+    @Inject
+    public ContractImpl() {
+    }
+  }
+  
+  public static class UntargettedImpl<T> {
+    @Inject
+    public UntargettedImpl() {
+    }
+  }
+  
+  private static class ContractProvider implements Provider<Object> {
+    @Override
+    public Object get() {
+      return new ContractImpl<Object>();
+    }
+  }
+  
+  public static class Node<A, B> {
+  }
+  
+  public static class D0 {
+  }
+  
+  public static class D1 {
+  }
+  
+  public static class D2 {
+  }
+  
+  public static class D3 {
+  }
+  
+  public static class D4 {
+  }
+  
+  public static class D5 {
+  }
+  
+  public static class D6 {
+  }
+  
+  public static class D7 {
+  }
+}
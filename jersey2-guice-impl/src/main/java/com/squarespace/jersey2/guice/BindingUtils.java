@@ -21,15 +21,14 @@ import static org.glassfish.hk2.api.InjectionResolver.SYSTEM_RESOLVER_NAME;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Qualifier;
@@ -46,13 +45,111 @@ import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
 import org.jvnet.hk2.annotations.Optional;
 import org.jvnet.hk2.internal.ConstantActiveDescriptor;
 
-import com.google.inject.BindingAnnotation;
+import com.google.inject.Binding;
 import com.google.inject.Guice;
 import com.google.inject.Key;
+import com.google.inject.Scope;
+import com.google.inject.Scopes;
+import com.google.inject.internal.MoreTypes;
 import com.google.inject.internal.Nullability;
+import com.google.inject.servlet.ServletScopes;
+import com.google.inject.spi.BindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
 
 class BindingUtils {
   
+  /**
+   * @see org.jvnet.hk2.annotations.Contract
+   */
+  private static final int HK2_CONTRACT = 1 << 0;
+  
+  /**
+   * @see org.glassfish.jersey.spi.Contract
+   */
+  private static final int JERSEY_CONTRACT = 1 << 1;
+  
+  /**
+   * @see #newThreeThirtyInjectionResolverDescriptor(ServiceLocator)
+   */
+  private static final Set<Type> THREE_THIRTY_RESOLVER_CONTRACTS = Collections.<Type>singleton(
+      new ParameterizedTypeImpl(InjectionResolver.class, javax.inject.Inject.class));
+  
+  /**
+   * @see #newThreeThirtyInjectionResolverDescriptor(ServiceLocator)
+   */
+  private static final Set<Annotation> THREE_THIRTY_RESOLVER_QUALIFIERS = Collections.<Annotation>singleton(
+      new NamedImpl(SYSTEM_RESOLVER_NAME));
+  
+  /**
+   * @see #newGuiceInjectionResolverDescriptor(ServiceLocator, ActiveDescriptor)
+   */
+  private static final Set<Type> GUICE_RESOLVER_CONTRACTS = Collections.<Type>singleton(
+      new ParameterizedTypeImpl(InjectionResolver.class, com.google.inject.Inject.class));
+  
+  /**
+   * The maximum number of {@link javax.inject.Named} qualifiers we're going to intern.
+   */
+  static final int MAX_INTERNED_NAMED = 4096;
+  
+  /**
+   * Interned {@link javax.inject.Named} qualifiers. It's bounded and cleared by
+   * {@link JerseyGuiceUtils#reset()}.
+   * 
+   * @see #toThreeThirtyNamed(com.google.inject.name.Named)
+   * @see #clear()
+   */
+  private static final ConcurrentMap<String, javax.inject.Named> NAMED = new ConcurrentHashMap<>();
+  
+  /**
+   * The HK2 and Jersey {@code @Contract} flags of a class. They're computed once per class.
+   * 
+   * NOTE: The values are {@link Integer}s and they don't pin any {@link ClassLoader}s.
+   */
+  private static final ClassValue<Integer> CONTRACT_FLAGS = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      int flags = 0;
+      
+      if (type.isAnnotationPresent(org.jvnet.hk2.annotations.Contract.class)) {
+        flags |= HK2_CONTRACT;
+      }
+      
+      if (type.isAnnotationPresent(org.glassfish.jersey.spi.Contract.class)) {
+        flags |= JERSEY_CONTRACT;
+      }
+      
+      return flags;
+    }
+  };
+  
+  /**
+   * @see #getScope(Binding)
+   */
+  private static final BindingScopingVisitor<Class<? extends Annotation>> SCOPE_VISITOR 
+      = new DefaultBindingScopingVisitor<Class<? extends Annotation>>() {
+    
+    @Override
+    public Class<? extends Annotation> visitScope(Scope scope) {
+      if (scope == ServletScopes.REQUEST) {
+        return GuiceRequestScope.class;
+      }
+      return GuiceScope.class;
+    }
+    
+    @Override
+    public Class<? extends Annotation> visitScopeAnnotation(Class<? extends Annotation> scopeAnnotation) {
+      if (scopeAnnotation == com.google.inject.servlet.RequestScoped.class) {
+        return GuiceRequestScope.class;
+      }
+      return GuiceScope.class;
+    }
+    
+    @Override
+    protected Class<? extends Annotation> visitOther() {
+      return GuiceScope.class;
+    }
+  };
+  
   private BindingUtils() {}
   
   /**
@@ -65,10 +162,8 @@ class BindingUtils {
     GuiceThreeThirtyResolver resolver 
       = new GuiceThreeThirtyResolver(locator);
     
-    Set<Annotation> qualifiers = Collections.<Annotation>singleton(
-        new NamedImpl(SYSTEM_RESOLVER_NAME));
-    
-    return newActiveDescriptor(locator, resolver, qualifiers, SYSTEM_RESOLVER_NAME, javax.inject.Inject.class);
+    return newActiveDescriptor(locator, resolver, THREE_THIRTY_RESOLVER_CONTRACTS, 
+        THREE_THIRTY_RESOLVER_QUALIFIERS, SYSTEM_RESOLVER_NAME);
   }
   
   /**
@@ -81,21 +176,21 @@ class BindingUtils {
   public static ActiveDescriptor<InjectionResolver<com.google.inject.Inject>> newGuiceInjectionResolverDescriptor(ServiceLocator locator, 
       ActiveDescriptor<? extends InjectionResolver<?>> threeThirtyResolver) {
     
-    GuiceInjectionResolver resolver = new GuiceInjectionResolver(threeThirtyResolver);
-    Set<Annotation> qualifiers = Collections.emptySet();
+    // The three-thirty resolver is a constant and it's safe to resolve it once upfront.
+    GuiceInjectionResolver resolver = new GuiceInjectionResolver(threeThirtyResolver.create(null));
     
-    return newActiveDescriptor(locator, resolver, qualifiers, GUICE_RESOLVER_NAME, com.google.inject.Inject.class);
+    return newActiveDescriptor(locator, resolver, GUICE_RESOLVER_CONTRACTS, 
+        Collections.<Annotation>emptySet(), GUICE_RESOLVER_NAME);
   }
   
   /**
+   * NOTE: The contracts and qualifiers are being copied by the {@link ActiveDescriptor}.
+   * 
    * @see #newThreeThirtyInjectionResolverDescriptor(ServiceLocator)
    * @see #newGuiceInjectionResolverDescriptor(ServiceLocator, ActiveDescriptor)
    */
   private static <T extends Annotation> ActiveDescriptor<InjectionResolver<T>> newActiveDescriptor(ServiceLocator locator, 
-      InjectionResolver<T> resolver, Set<Annotation> qualifiers, String name, Class<? extends T> clazz) {
-    
-    Set<Type> contracts = Collections.<Type>singleton(
-        new ParameterizedTypeImpl(InjectionResolver.class, clazz));
+      InjectionResolver<T> resolver, Set<Type> contracts, Set<Annotation> qualifiers, String name) {
     
     ActiveDescriptor<InjectionResolver<T>> descriptor =
       new ConstantActiveDescriptor<InjectionResolver<T>>(
@@ -122,42 +217,12 @@ class BindingUtils {
       return true;
     }
     
-    // Guice's optional
-    AnnotatedElement element = injectee.getParent();
-    if (isGuiceOptional(element)) {
-      return true;
-    }
-    
-    // Any @Nullable?
-    int position = injectee.getPosition();
-    
-    if (element instanceof Field) {
-      return Nullability.allowsNull(((Field)element).getAnnotations());
-      
-    } else if (element instanceof Method) {
-      Annotation annotations[][] = ((Method)element).getParameterAnnotations();
-      return Nullability.allowsNull(annotations[position]);
-      
-    } else if (element instanceof Constructor<?>) {
-      Annotation annotations[][] = ((Constructor<?>)element).getParameterAnnotations();
-      return Nullability.allowsNull(annotations[position]);
-    }
-    
-    return false;
-  }
-  
-  /**
-   * Returns {@code true} if the given {@link AnnotatedElement} has a
-   * {@link com.google.inject.Inject} {@link Annotation} and it's marked 
-   * as being optional.
-   * 
-   * @see com.google.inject.Inject#optional()
-   */
-  private static boolean isGuiceOptional(AnnotatedElement element) {
-    com.google.inject.Inject inject = element.getAnnotation(com.google.inject.Inject.class);
+    // Guice's optional or any @Nullable?
+    InjectionPointMetadata metadata = InjectionPointMetadata.get(
+        injectee.getParent(), injectee.getPosition());
     
-    if (inject != null) {
-      return inject.optional();
+    if (metadata != null) {
+      return metadata.isGuiceOptional() || metadata.isNullable();
     }
     
     return false;
@@ -170,10 +235,15 @@ class BindingUtils {
    * @see org.jvnet.hk2.annotations.Contract
    */
   public static boolean isHk2Contract(Injectee injectee) {
-    Type type = injectee.getRequiredType();
-    return isContact(type, org.jvnet.hk2.annotations.Contract.class);
+    return isHk2Contract(injectee.getRequiredType());
   }
   
+  /**
+   * @see #isHk2Contract(Injectee)
+   */
+  public static boolean isHk2Contract(Type type) {
+    return (getContractFlags(type) & HK2_CONTRACT) != 0;
+  }
   
   /**
    * Returns {@code true} if the {@link Injectee} has a Jersey SPI 
@@ -182,29 +252,104 @@ class BindingUtils {
    * @see org.glassfish.jersey.spi.Contract
    */
   public static boolean isJerseyContract(Injectee injectee) {
-    Type type = injectee.getRequiredType();
-    return isContact(type, org.glassfish.jersey.spi.Contract.class);
+    return isJerseyContract(injectee.getRequiredType());
+  }
+  
+  /**
+   * @see #isJerseyContract(Injectee)
+   */
+  public static boolean isJerseyContract(Type type) {
+    return (getContractFlags(type) & JERSEY_CONTRACT) != 0;
   }
   
-  private static boolean isContact(Type type, Class<? extends Annotation> annotationType) {
+  private static int getContractFlags(Type type) {
     if (type instanceof Class<?>) {
-      return ((Class<?>)type).isAnnotationPresent(annotationType);
+      return CONTRACT_FLAGS.get((Class<?>)type);
     }
     
     if (type instanceof ParameterizedType) {
       Type rawType = ((ParameterizedType)type).getRawType();
-      return isContact(rawType, annotationType);
+      return getContractFlags(rawType);
     }
     
-    return false;
+    return 0;
+  }
+  
+  /**
+   * Returns the raw {@link Class} of the given {@link Type}.
+   * 
+   * NOTE: This is a shortcut for the two most common cases. Everything 
+   * else is handled by {@link MoreTypes#getRawType(Type)}.
+   */
+  public static Class<?> getRawType(Type type) {
+    if (type instanceof Class<?>) {
+      return (Class<?>)type;
+    }
+    
+    if (type instanceof ParameterizedType) {
+      Type rawType = ((ParameterizedType)type).getRawType();
+      if (rawType instanceof Class<?>) {
+        return (Class<?>)rawType;
+      }
+    }
+    
+    return MoreTypes.getRawType(type);
+  }
+  
+  /**
+   * Returns the HK2 scope for the given {@link Binding}.
+   * 
+   * <ul>
+   *   <li>{@link Guice} singletons (incl. eager singletons) are HK2 {@link Singleton}s.
+   *   HK2 can hold on to them and skip {@link Guice} altogether on subsequent lookups.</li>
+   *   <li>{@link Guice} {@link com.google.inject.servlet.RequestScoped} bindings are in
+   *   the {@link GuiceRequestScope} which uses Jersey's request scope if there is one.</li>
+   *   <li>Everything else is in the {@link GuiceScope} which asks {@link Guice} on 
+   *   each lookup.</li>
+   * </ul>
+   * 
+   * @see Scopes#isSingleton(Binding)
+   * @see Binding#acceptScopingVisitor(BindingScopingVisitor)
+   */
+  public static Class<? extends Annotation> getScope(Binding<?> binding) {
+    if (Scopes.isSingleton(binding)) {
+      return Singleton.class;
+    }
+    
+    return binding.acceptScopingVisitor(SCOPE_VISITOR);
   }
   
   /**
    * Turns a {@link Guice} {@link com.google.inject.name.Named} into a 
-   * JSR-330's {@link javax.inject.Named} instance.
+   * JSR-330's {@link javax.inject.Named} instance. The instances are
+   * interned (up to {@link #MAX_INTERNED_NAMED}) and qualifier matching 
+   * can compare them by identity. It falls back to their values otherwise.
+   * 
+   * @see QualifierSet
    */
   public static javax.inject.Named toThreeThirtyNamed(com.google.inject.name.Named qualifier) {
-    return new NamedImpl(qualifier.value());
+    String value = qualifier.value();
+    
+    javax.inject.Named named = NAMED.get(value);
+    if (named == null) {
+      named = new NamedImpl(value);
+      
+      if (NAMED.size() < MAX_INTERNED_NAMED) {
+        javax.inject.Named existing = NAMED.putIfAbsent(value, named);
+        if (existing != null) {
+          named = existing;
+        }
+      }
+    }
+    
+    return named;
+  }
+  
+  /**
+   * Forgets all interned {@link javax.inject.Named} qualifiers.
+   */
+  static void clear() {
+    NAMED.clear();
   }
   
   /**
@@ -212,7 +357,15 @@ class BindingUtils {
    */
   public static Key<?> toKey(Injectee injectee) {
     Type type = injectee.getRequiredType();
-    Set<Annotation> qualifiers = getQualifiers(injectee);
+    
+    InjectionPointMetadata metadata = InjectionPointMetadata.get(
+        injectee.getParent(), injectee.getPosition());
+    
+    if (metadata != null) {
+      return metadata.getKey(type, injectee.getRequiredQualifiers());
+    }
+    
+    Set<Annotation> qualifiers = injectee.getRequiredQualifiers();
     return newKey(type, qualifiers);
   }
   
@@ -237,12 +390,12 @@ class BindingUtils {
         return Collections.singleton(annotation);
       }
       
-      return Collections.<Annotation>singleton(new GuiceQualifier<>(key));
+      return Collections.<Annotation>singleton(GuiceQualifier.of(key));
     }
     
     Class<? extends Annotation> annotationType = key.getAnnotationType();
     if (annotationType != null) {
-      return Collections.<Annotation>singleton(new GuiceQualifier<>(key));
+      return Collections.<Annotation>singleton(GuiceQualifier.of(key));
     }
     
     return Collections.emptySet();
@@ -251,7 +404,7 @@ class BindingUtils {
   /**
    * Creates and returns a {@link Key} for the given {@link Type} and {@link Set} of {@link Annotation}s.
    */
-  private static Key<?> newKey(Type type, Set<? extends Annotation> qualifiers) {
+  static Key<?> newKey(Type type, Set<? extends Annotation> qualifiers) {
     if (qualifiers.isEmpty()) {
       return Key.get(type);
     }
@@ -266,72 +419,6 @@ class BindingUtils {
     return null;
   }
   
-  /**
-   * NOTE: There can be only one {@link Annotation} that is a {@link Qualifier} or {@link BindingAnnotation}. 
-   * They're the same but HK2 does not know about {@link BindingAnnotation}.
-   * 
-   * @see Qualifier
-   * @see BindingAnnotation
-   * @see javax.inject.Named
-   * @see com.google.inject.name.Named
-   */
-  private static Set<Annotation> getQualifiers(Injectee injectee) {
-    // JSR 330's @Qualifier
-    Set<Annotation> qualifiers = injectee.getRequiredQualifiers();
-    if (!qualifiers.isEmpty()) {
-      return qualifiers;
-    }
-    
-    AnnotatedElement element = injectee.getParent();
-    int position = injectee.getPosition();
-    
-    // Guice's @BindingAnnotation is the same as @Qualifier
-    Annotation annotation = getBindingAnnotation(element, position);
-    if (annotation != null) {
-      return Collections.singleton(annotation);
-    }
-    
-    return Collections.emptySet();
-  }
-  
-  /**
-   * Returns a {@link BindingAnnotation} for the given {@link AnnotatedElement} and position.
-   */
-  private static Annotation getBindingAnnotation(AnnotatedElement element, int position) {
-    if (element instanceof Field) {
-      return getBindingAnnotation(((Field)element).getAnnotations());
-    }
-    
-    if (element instanceof Method) {
-      Annotation annotations[][] = ((Method)element).getParameterAnnotations();
-      return getBindingAnnotation(annotations[position]);
-    }
-    
-    if (element instanceof Constructor<?>) {
-      Annotation annotations[][] = ((Constructor<?>)element).getParameterAnnotations();
-      return getBindingAnnotation(annotations[position]);
-    }
-    
-    return null;
-  }
-  
-  /**
-   * Returns the first {@link Annotation} from the given array that
-   * is a {@link BindingAnnotation}.
-   * 
-   * @see BindingAnnotation
-   */
-  private static Annotation getBindingAnnotation(Annotation[] annotations) {
-    for (Annotation annotation : annotations) {
-      Class<? extends Annotation> type = annotation.annotationType();
-      if (type.isAnnotationPresent(BindingAnnotation.class)) {
-        return annotation;
-      }
-    }
-    
-    return null;
-  }
-  
   /**
    * @see ReflectionHelper#getNameFromAllQualifiers(Set, AnnotatedElement)
    */
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+/**
+ * An immutable snapshot of a cache's hit and miss counters.
+ */
+public final class CacheStats {
+  
+  private final long hitCount;
+  
+  private final long missCount;
+  
+  private final long size;
+  
+  public CacheStats(long hitCount, long missCount, long size) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.size = size;
+  }
+  
+  /**
+   * Returns the number of lookups that were answered by the cache.
+   */
+  public long hitCount() {
+    return hitCount;
+  }
+  
+  /**
+   * Returns the number of lookups that were not answered by the cache.
+   */
+  public long missCount() {
+    return missCount;
+  }
+  
+  /**
+   * Returns the number of entries in the cache at the time the snapshot was taken.
+   */
+  public long size() {
+    return size;
+  }
+  
+  /**
+   * Returns the ratio of hits to lookups or {@code 1.0} if there were no lookups.
+   */
+  public double hitRate() {
+    long requestCount = hitCount + missCount;
+    return (requestCount == 0L) ? 1.0 : (double)hitCount / requestCount;
+  }
+  
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[hitCount=" + hitCount 
+        + ", missCount=" + missCount + ", size=" + size + "]";
+  }
+}
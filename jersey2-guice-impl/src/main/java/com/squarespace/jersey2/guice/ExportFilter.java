@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Key;
+
+/**
+ * Decides which {@link Guice} {@link Binding}s are being exported to HK2. The 
+ * {@link ExportFilter} is being applied before any HK2 descriptor is built.
+ * 
+ * NOTE: HK2 may still ask for a filtered {@link Key} just-in-time (i.e. if a
+ * Jersey component wants it injected) and {@link Guice} will provide it.
+ * 
+ * @see ExportFilters
+ * @see LinkOptions#withExportFilter(ExportFilter)
+ */
+public interface ExportFilter {
+  
+  /**
+   * Returns {@code true} if the given {@link Binding} should be exported to HK2.
+   */
+  public boolean accept(Key<?> key, Binding<?> binding);
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Provides;
+import com.google.inject.spi.ElementSource;
+
+/**
+ * Factory methods for {@link ExportFilter}s.
+ * 
+ * <pre>
+ * ExportFilter filter = ExportFilters.or(
+ *     ExportFilters.exposed(),
+ *     ExportFilters.not(ExportFilters.packages("com.example.internal")));
+ * </pre>
+ * 
+ * @see ExportFilter
+ */
+public class ExportFilters {
+  
+  private static final ExportFilter ALL = new ExportFilter() {
+    @Override
+    public boolean accept(Key<?> key, Binding<?> binding) {
+      return true;
+    }
+    
+    @Override
+    public String toString() {
+      return "ALL";
+    }
+  };
+  
+  private ExportFilters() {}
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts all {@link Binding}s. This is the default.
+   */
+  public static ExportFilter all() {
+    return ALL;
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts the given {@link Key}s.
+   */
+  public static ExportFilter keys(Key<?>... keys) {
+    final Set<Key<?>> set = new HashSet<>(Arrays.asList(keys));
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        return set.contains(key);
+      }
+    };
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts {@link Binding}s whose {@link Key}'s 
+   * raw type is in one of the given packages (or their sub-packages).
+   */
+  public static ExportFilter packages(String... packages) {
+    final String[] prefixes = new String[packages.length];
+    for (int i = 0; i < packages.length; i++) {
+      prefixes[i] = packages[i] + ".";
+    }
+    
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        String name = key.getTypeLiteral().getRawType().getName();
+        for (String prefix : prefixes) {
+          if (name.startsWith(prefix)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts {@link Binding}s whose {@link Key} has
+   * the given binding annotation, whose {@link Key}'s raw type is annotated with it or 
+   * that come from a {@link Provides} method that is annotated with it.
+   */
+  public static ExportFilter annotatedWith(final Class<? extends Annotation> annotationType) {
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        if (annotationType.equals(key.getAnnotationType())) {
+          return true;
+        }
+        
+        if (key.getTypeLiteral().getRawType().isAnnotationPresent(annotationType)) {
+          return true;
+        }
+        
+        Object source = binding.getSource();
+        if (source instanceof ElementSource) {
+          source = ((ElementSource)source).getDeclaringSource();
+        }
+        
+        return source instanceof AnnotatedElement
+            && ((AnnotatedElement)source).isAnnotationPresent(annotationType);
+      }
+    };
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts {@link Binding}s that are marked
+   * with {@link ExposeToJersey}.
+   * 
+   * @see #annotatedWith(Class)
+   */
+  public static ExportFilter exposed() {
+    return annotatedWith(ExposeToJersey.class);
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts the {@link Binding}s 
+   * the given {@link ExportFilter} rejects.
+   */
+  public static ExportFilter not(final ExportFilter filter) {
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        return !filter.accept(key, binding);
+      }
+    };
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts {@link Binding}s that 
+   * are accepted by all of the given {@link ExportFilter}s.
+   */
+  public static ExportFilter and(final ExportFilter... filters) {
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        for (ExportFilter filter : filters) {
+          if (!filter.accept(key, binding)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+  
+  /**
+   * Returns an {@link ExportFilter} that accepts {@link Binding}s that 
+   * are accepted by any of the given {@link ExportFilter}s.
+   */
+  public static ExportFilter or(final ExportFilter... filters) {
+    return new ExportFilter() {
+      @Override
+      public boolean accept(Key<?> key, Binding<?> binding) {
+        for (ExportFilter filter : filters) {
+          if (filter.accept(key, binding)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+}
@@ -38,15 +38,44 @@ class GuiceBinder<T> extends AbstractBinder {
   private final Key<T> key;
   
   private final Binding<T> binding;
+  
+  private volatile GuiceBindingDescriptor<T> descriptor;
 
   public GuiceBinder(Key<T> key, Binding<T> binding) {
     this.key = key;
     this.binding = binding;
   }
+  
+  /**
+   * Returns the {@link Guice} {@link Key}.
+   */
+  Key<T> getKey() {
+    return key;
+  }
+  
+  /**
+   * Creates the {@link GuiceBindingDescriptor} ahead of {@link #configure()}. This
+   * allows us to do the work on an arbitrary thread.
+   * 
+   * @see GuiceBinderTask
+   */
+  GuiceBinder<T> prepare() {
+    getDescriptor();
+    return this;
+  }
+  
+  private GuiceBindingDescriptor<T> getDescriptor() {
+    GuiceBindingDescriptor<T> descriptor = this.descriptor;
+    if (descriptor == null) {
+      descriptor = newDescriptor(key, binding);
+      this.descriptor = descriptor;
+    }
+    return descriptor;
+  }
 
   @Override
   protected void configure() {
-    bind(newDescriptor(key, binding));
+    bind(getDescriptor());
   }
   
   @Override
@@ -80,6 +109,6 @@ class GuiceBinder<T> extends AbstractBinder {
     
     Set<Annotation> qualifiers = BindingUtils.getQualifiers(key);
     
-    return new GuiceBindingDescriptor<>(type, clazz, qualifiers, binding);
+    return GuiceDescriptorFactory.newDescriptor(type, clazz, qualifiers, binding);
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.inject.Binding;
+import com.google.inject.Key;
+
+/**
+ * A {@link RecursiveTask} that turns {@link Binding}s into {@link GuiceBinder}s with 
+ * pre-built descriptors. The {@link Binding}s are split in halves until a partition 
+ * is small enough to be processed on the current thread.
+ * 
+ * @see LinkMode#PARALLEL
+ */
+@SuppressWarnings("serial")
+class GuiceBinderTask extends RecursiveTask<List<GuiceBinder<?>>> {
+  
+  /**
+   * Partitions with fewer {@link Binding}s than this are processed on the current thread.
+   */
+  private static final int THRESHOLD = 512;
+  
+  /**
+   * Turns the given {@link Binding}s into {@link GuiceBinder}s using the {@link ForkJoinPool}.
+   * 
+   * NOTE: The {@link GuiceBinder}s are returned in the same order as the {@link Map}'s entries.
+   */
+  public static List<GuiceBinder<?>> toBinders(Map<Key<?>, Binding<?>> bindings) {
+    List<Map.Entry<Key<?>, Binding<?>>> entries = new ArrayList<>(bindings.entrySet());
+    
+    // The worker threads have no notion of the caller's context ClassLoader.
+    ModuleClassifier classifier = ModuleClassifier.get(
+        Thread.currentThread().getContextClassLoader());
+    
+    GuiceBinderTask task = new GuiceBinderTask(entries, 0, entries.size(), classifier);
+    return Holder.POOL.invoke(task);
+  }
+  
+  private final List<Map.Entry<Key<?>, Binding<?>>> entries;
+  
+  private final int from;
+  
+  private final int to;
+  
+  private final ModuleClassifier classifier;
+  
+  private GuiceBinderTask(List<Map.Entry<Key<?>, Binding<?>>> entries, 
+      int from, int to, ModuleClassifier classifier) {
+    this.entries = entries;
+    this.from = from;
+    this.to = to;
+    this.classifier = classifier;
+  }
+  
+  @Override
+  protected List<GuiceBinder<?>> compute() {
+    int length = to - from;
+    
+    if (length <= THRESHOLD) {
+      List<GuiceBinder<?>> binders = new ArrayList<>(length);
+      
+      for (int i = from; i < to; i++) {
+        Map.Entry<Key<?>, Binding<?>> entry = entries.get(i);
+        
+        GuiceBinder<?> binder = JerseyGuiceUtils.toBinder(
+            entry.getKey(), entry.getValue(), classifier);
+        
+        if (binder != null) {
+          binders.add(binder.prepare());
+        }
+      }
+      
+      return binders;
+    }
+    
+    int middle = from + length / 2;
+    
+    GuiceBinderTask left = new GuiceBinderTask(entries, from, middle, classifier);
+    GuiceBinderTask right = new GuiceBinderTask(entries, middle, to, classifier);
+    
+    left.fork();
+    
+    List<GuiceBinder<?>> tail = right.compute();
+    
+    List<GuiceBinder<?>> dst = left.join();
+    dst.addAll(tail);
+    
+    return dst;
+  }
+  
+  /**
+   * The {@link ForkJoinPool} is created lazily upon first use.
+   */
+  private static class Holder {
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+}
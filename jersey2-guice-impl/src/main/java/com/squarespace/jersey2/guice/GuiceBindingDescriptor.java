@@ -18,9 +18,7 @@ package com.squarespace.jersey2.guice;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -32,19 +30,41 @@ import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
 
 import com.google.inject.Binding;
 import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
 
 /**
  * An {@link ActiveDescriptor} that is backed by a {@link Guice} {@link Binding}.
+ * 
+ * @see BindingUtils#getScope(Binding)
  */
 class GuiceBindingDescriptor<T> extends AbstractActiveDescriptor<T> {
 
   private final Class<?> clazz;
 
   private final Binding<T> binding;
+  
+  private final QualifierSet qualifiers;
+  
+  /**
+   * The {@link Binding}'s {@link Provider}. It's being resolved lazily 
+   * because module {@link Binding}s don't have one.
+   * 
+   * @see #getProvider()
+   */
+  private volatile Provider<T> provider;
 
   public GuiceBindingDescriptor(Type type, Class<?> clazz,
       Set<Annotation> qualifiers, Binding<T> binding) {
-    super(Collections.singleton(type), GuiceScope.class,
+    this(type, clazz, qualifiers, binding, BindingUtils.getScope(binding));
+  }
+  
+  /**
+   * @see GuiceDescriptorFactory
+   */
+  protected GuiceBindingDescriptor(Type type, Class<?> clazz,
+      Set<Annotation> qualifiers, Binding<T> binding, Class<? extends Annotation> scope) {
+    super(Collections.singleton(type), scope,
         BindingUtils.getNameFromAllQualifiers(qualifiers, clazz),
         qualifiers, DescriptorType.CLASS, DescriptorVisibility.NORMAL,
         0, false, (Boolean)null, (String)null,
@@ -52,10 +72,33 @@ class GuiceBindingDescriptor<T> extends AbstractActiveDescriptor<T> {
 
     this.clazz = clazz;
     this.binding = binding;
+    this.qualifiers = QualifierSet.of(qualifiers);
 
     setImplementation(clazz.getName());
   }
 
+  /**
+   * Returns the {@link Guice} {@link Binding}.
+   */
+  public Binding<T> getBinding() {
+    return binding;
+  }
+
+  /**
+   * Returns the {@link Binding}'s {@link Provider}. The {@link Provider} of a
+   * {@link Binding} never changes once the {@link Injector} has been created 
+   * and it's therefore being resolved only once.
+   */
+  public Provider<T> getProvider() {
+    Provider<T> provider = this.provider;
+    if (provider == null) {
+      // It's OK if two threads race to this point. They'll get the same Provider.
+      provider = binding.getProvider();
+      this.provider = provider;
+    }
+    return provider;
+  }
+
   @Override
   public Class<?> getImplementationClass() {
     return clazz;
@@ -63,7 +106,7 @@ class GuiceBindingDescriptor<T> extends AbstractActiveDescriptor<T> {
 
   @Override
   public T create(ServiceHandle<?> root) {
-    return binding.getProvider().get();
+    return getProvider().get();
   }
 
   @Override
@@ -71,41 +114,13 @@ class GuiceBindingDescriptor<T> extends AbstractActiveDescriptor<T> {
     return true;
   }
 
-  @Override
-  public Set<Annotation> getQualifierAnnotations(){
-    Set<Annotation> qualifierAnnotations = super.getQualifierAnnotations();
-    return qualifierAnnotations.isEmpty() ? qualifierAnnotations : lenientSet(qualifierAnnotations);
-  }
-
-  private static <E> Set<E> lenientSet(Collection<E> entries){
-    LenientHashSet<E> lenientHashSet = new LenientHashSet<>();
-    lenientHashSet.addAll(entries);
-    return lenientHashSet;
-  }
-
   /**
-   * Because sun's runtime version of Annotation doesn't know anything about GuiceQualifier we
-   * switch the equality check around so that equals in GuiceQualifier is used instead.
-   * Ugly workaround until hk2 supports something similar to guice's AnnotationTypeStrategy.
+   * Because sun's runtime version of Annotation doesn't know anything about {@link GuiceQualifier} 
+   * we return a {@link QualifierSet} that uses {@link GuiceQualifier}'s equality semantics instead.
+   * It's being built once and it's immutable.
    */
-  @SuppressWarnings("serial")
-  private static class LenientHashSet<E> extends HashSet<E>{
-    @Override
-    public boolean containsAll(Collection<?> foreignEntries) {
-      for (Object foreignEntry : foreignEntries) {
-        boolean matched = false;
-        for (E containedEntry : this){
-          if (containedEntry.equals(foreignEntry)) {
-            matched = true;
-            break;
-          }
-        }
-        
-        if(!matched) {
-          return false;
-        }
-      }
-      return true;
-    }
+  @Override
+  public Set<Annotation> getQualifierAnnotations() {
+    return qualifiers;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.ext.Provider;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Key;
+
+/**
+ * An index of {@link GuiceBinder}s by the raw type of their {@link Key}s. The
+ * {@link GuiceBinder}s of a raw type are being turned into HK2 descriptors all 
+ * at once and only when HK2 asks for the raw type for the first time.
+ * 
+ * @see LinkMode#LAZY
+ * @see GuiceJustInTimeResolver
+ */
+class GuiceBindingIndex {
+  
+  /**
+   * Splits the given {@link GuiceBinder}s into the ones that must be exported
+   * right away and a {@link GuiceBindingIndex} for the rest of them.
+   * 
+   * HK2 doesn't ask the {@link GuiceJustInTimeResolver} for things it looks up
+   * with {@link ServiceLocator#getAllServices(java.lang.reflect.Type, java.lang.annotation.Annotation...)}.
+   * HK2 and Jersey contracts as well as JAX-RS types (e.g. {@code ExceptionMapper}s) 
+   * are therefore always exported right away. The same is true for JAX-RS resources
+   * and providers. Jersey doesn't ask for them if it doesn't know about them and 
+   * would create them itself instead of asking {@link Guice}.
+   */
+  public static GuiceBindingIndex split(Iterable<GuiceBinder<?>> binders, List<? super GuiceBinder<?>> eager) {
+    Map<Class<?>, List<GuiceBinder<?>>> index = new HashMap<>();
+    
+    for (GuiceBinder<?> binder : binders) {
+      Class<?> rawType = binder.getKey().getTypeLiteral().getRawType();
+      
+      if (isEager(rawType)) {
+        eager.add(binder);
+        continue;
+      }
+      
+      List<GuiceBinder<?>> list = index.get(rawType);
+      if (list == null) {
+        list = new ArrayList<>();
+        index.put(rawType, list);
+      }
+      
+      list.add(binder);
+    }
+    
+    return new GuiceBindingIndex(index);
+  }
+  
+  private static boolean isEager(Class<?> rawType) {
+    return BindingUtils.isHk2Contract(rawType) 
+        || BindingUtils.isJerseyContract(rawType)
+        || rawType.getName().startsWith("javax.ws.rs.")
+        || rawType.isAnnotationPresent(Path.class)
+        || rawType.isAnnotationPresent(Provider.class);
+  }
+  
+  private final ConcurrentMap<Class<?>, Entry> entries;
+  
+  private GuiceBindingIndex(Map<Class<?>, List<GuiceBinder<?>>> index) {
+    this.entries = new ConcurrentHashMap<>(index.size());
+    
+    for (Map.Entry<Class<?>, List<GuiceBinder<?>>> entry : index.entrySet()) {
+      entries.put(entry.getKey(), new Entry(entry.getValue()));
+    }
+  }
+  
+  /**
+   * Exports all {@link Guice} {@link Binding}s of the given raw type to HK2 (unless
+   * it has been done before) and returns {@code true} if one of them is for the 
+   * given {@link Key}.
+   */
+  public boolean materialize(ServiceLocator locator, Class<?> rawType, Key<?> key) {
+    Entry entry = entries.get(rawType);
+    if (entry == null) {
+      return false;
+    }
+    
+    return entry.materialize(locator, key);
+  }
+  
+  private static class Entry {
+    
+    private List<GuiceBinder<?>> binders;
+    
+    private Set<Key<?>> keys = null;
+    
+    public Entry(List<GuiceBinder<?>> binders) {
+      this.binders = binders;
+    }
+    
+    public synchronized boolean materialize(ServiceLocator locator, Key<?> key) {
+      if (keys == null) {
+        Set<Key<?>> materialized = new HashSet<>();
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        DynamicConfiguration dc = dcs.createDynamicConfiguration();
+        
+        for (GuiceBinder<?> binder : binders) {
+          JerseyGuiceUtils.bind(locator, dc, binder);
+          materialized.add(binder.getKey());
+        }
+        
+        dc.commit();
+        
+        // The GuiceBinders are no longer needed
+        this.keys = materialized;
+        this.binders = null;
+      }
+      
+      return keys.contains(key);
+    }
+  }
+}
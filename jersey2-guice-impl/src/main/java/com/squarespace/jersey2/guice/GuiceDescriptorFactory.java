@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ServiceHandle;
+
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.internal.BindingImpl;
+import com.google.inject.spi.BindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderInstanceBinding;
+
+/**
+ * Creates {@link GuiceBindingDescriptor}s. The {@link Binding}'s target is being
+ * used to pick the cheapest form of {@link GuiceBindingDescriptor}.
+ * 
+ * <ul>
+ *   <li>{@link InstanceBinding}s become constants. HK2 gets the instance without 
+ *   going through {@link Guice} at all.</li>
+ *   <li>Unscoped {@link LinkedKeyBinding}s become aliases of their target {@link Key}. 
+ *   They're in the target's scope and they call the target's {@link Provider} directly.</li>
+ *   <li>Everything else (incl. {@link ProviderInstanceBinding}s) goes through 
+ *   {@link Binding#getProvider()} to preserve {@link Guice}'s scoping, provision 
+ *   listeners and null checks.</li>
+ * </ul>
+ * 
+ * @see Binding#acceptTargetVisitor(com.google.inject.spi.BindingTargetVisitor)
+ */
+class GuiceDescriptorFactory {
+  
+  private GuiceDescriptorFactory() {}
+  
+  /**
+   * Creates and returns a {@link GuiceBindingDescriptor} for the given {@link Binding}.
+   */
+  public static <T> GuiceBindingDescriptor<T> newDescriptor(Type type, Class<?> clazz, 
+      Set<Annotation> qualifiers, Binding<T> binding) {
+    
+    DescriptorVisitor<T> visitor = new DescriptorVisitor<>(type, clazz, qualifiers, binding);
+    return binding.acceptTargetVisitor(visitor);
+  }
+  
+  /**
+   * Returns {@code true} if the {@link Binding} has no scope at all.
+   */
+  private static boolean isUnscoped(Binding<?> binding) {
+    return binding.acceptScopingVisitor(IS_UNSCOPED);
+  }
+  
+  private static final BindingScopingVisitor<Boolean> IS_UNSCOPED 
+      = new DefaultBindingScopingVisitor<Boolean>() {
+    @Override
+    public Boolean visitNoScoping() {
+      return Boolean.TRUE;
+    }
+    
+    @Override
+    protected Boolean visitOther() {
+      return Boolean.FALSE;
+    }
+  };
+  
+  private static class DescriptorVisitor<T> extends DefaultBindingTargetVisitor<T, GuiceBindingDescriptor<T>> {
+    
+    private final Type type;
+    
+    private final Class<?> clazz;
+    
+    private final Set<Annotation> qualifiers;
+    
+    private final Binding<T> binding;
+    
+    public DescriptorVisitor(Type type, Class<?> clazz, Set<Annotation> qualifiers, Binding<T> binding) {
+      this.type = type;
+      this.clazz = clazz;
+      this.qualifiers = qualifiers;
+      this.binding = binding;
+    }
+    
+    @Override
+    public GuiceBindingDescriptor<T> visit(InstanceBinding<? extends T> instanceBinding) {
+      T instance = instanceBinding.getInstance();
+      return new InstanceDescriptor<>(type, clazz, qualifiers, binding, instance);
+    }
+    
+    @Override
+    public GuiceBindingDescriptor<T> visit(LinkedKeyBinding<? extends T> linkedKeyBinding) {
+      if (!isUnscoped(binding) || !(binding instanceof BindingImpl<?>)) {
+        return visitOther(linkedKeyBinding);
+      }
+      
+      Injector injector = ((BindingImpl<?>)binding).getInjector();
+      if (injector == null) {
+        return visitOther(linkedKeyBinding);
+      }
+      
+      Binding<? extends T> target = injector.getBinding(linkedKeyBinding.getLinkedKey());
+      return new AliasDescriptor<T>(type, clazz, qualifiers, binding, target);
+    }
+    
+    @Override
+    protected GuiceBindingDescriptor<T> visitOther(Binding<? extends T> other) {
+      return new GuiceBindingDescriptor<>(type, clazz, qualifiers, binding);
+    }
+  }
+  
+  /**
+   * A {@link GuiceBindingDescriptor} for {@link InstanceBinding}s.
+   */
+  private static class InstanceDescriptor<T> extends GuiceBindingDescriptor<T> {
+    
+    private static final long serialVersionUID = 0;
+    
+    private final T instance;
+    
+    public InstanceDescriptor(Type type, Class<?> clazz, 
+        Set<Annotation> qualifiers, Binding<T> binding, T instance) {
+      super(type, clazz, qualifiers, binding, Singleton.class);
+      this.instance = instance;
+    }
+    
+    @Override
+    public T create(ServiceHandle<?> root) {
+      return instance;
+    }
+  }
+  
+  /**
+   * A {@link GuiceBindingDescriptor} for unscoped {@link LinkedKeyBinding}s. The target's 
+   * {@link Provider} is being resolved lazily like {@link GuiceBindingDescriptor#getProvider()}.
+   */
+  private static class AliasDescriptor<T> extends GuiceBindingDescriptor<T> {
+    
+    private static final long serialVersionUID = 0;
+    
+    private final Binding<? extends T> target;
+    
+    private volatile Provider<? extends T> targetProvider;
+    
+    public AliasDescriptor(Type type, Class<?> clazz, 
+        Set<Annotation> qualifiers, Binding<T> binding, Binding<? extends T> target) {
+      super(type, clazz, qualifiers, binding, BindingUtils.getScope(target));
+      this.target = target;
+    }
+    
+    @Override
+    public T create(ServiceHandle<?> root) {
+      Provider<? extends T> targetProvider = this.targetProvider;
+      if (targetProvider == null) {
+        // It's OK if two threads race to this point. They'll get the same Provider.
+        targetProvider = target.getProvider();
+        this.targetProvider = targetProvider;
+      }
+      return targetProvider.get();
+    }
+  }
+}
@@ -16,7 +16,6 @@
 
 package com.squarespace.jersey2.guice;
 
-import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Injectee;
 import org.glassfish.hk2.api.InjectionResolver;
 import org.glassfish.hk2.api.ServiceHandle;
@@ -25,7 +24,9 @@ import com.google.inject.Guice;
 
 /**
  * The {@link GuiceInjectionResolver} delegates all {@link Guice}'s {@link com.google.inject.Inject}
- * binding annotations to JSR-330's {@link javax.inject.Inject}.
+ * binding annotations to JSR-330's {@link javax.inject.Inject}. Both share the same resolution 
+ * pipeline and the delegate is being resolved once when the {@link GuiceInjectionResolver} is 
+ * being created and not for every injection point.
  * 
  * @see GuiceThreeThirtyResolver
  */
@@ -39,15 +40,21 @@ class GuiceInjectionResolver extends AbstractInjectionResolver<com.google.inject
    */
   public static final String GUICE_RESOLVER_NAME = "GuiceInjectionResolver";
   
-  private final ActiveDescriptor<? extends InjectionResolver<?>> descriptor;
+  private final InjectionResolver<?> delegate;
   
-  public GuiceInjectionResolver(ActiveDescriptor<? extends InjectionResolver<?>> descriptor) {
-    this.descriptor = descriptor;
+  public GuiceInjectionResolver(InjectionResolver<?> delegate) {
+    this.delegate = delegate;
+  }
+  
+  /**
+   * Returns the {@link InjectionResolver} for {@link javax.inject.Inject}.
+   */
+  public InjectionResolver<?> getDelegate() {
+    return delegate;
   }
   
   @Override
   public Object resolve(Injectee injectee, ServiceHandle<?> root) {
-    InjectionResolver<?> resolver = descriptor.create(root);
-    return resolver.resolve(injectee, root);
+    return delegate.resolve(injectee, root);
   }
 }
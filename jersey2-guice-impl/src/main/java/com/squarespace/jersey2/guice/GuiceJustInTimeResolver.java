@@ -18,80 +18,526 @@ package com.squarespace.jersey2.guice;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.Filter;
 import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.api.IterableProvider;
 import org.glassfish.hk2.api.JustInTimeInjectionResolver;
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 
 import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
-import com.google.inject.internal.MoreTypes;
+import com.google.inject.Provider;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.spi.Message;
 
 /**
  * A {@link JustInTimeInjectionResolver} that is backed by {@link Guice}.
+ * 
+ * HK2 calls the {@link JustInTimeInjectionResolver} over and over again for the same 
+ * unresolvable {@link Injectee}. The error {@link Message}s of the {@link ConfigurationException}s 
+ * {@link Guice} throws for such {@link Key}s are therefore remembered (up to {@link #MAX_FAILURES}) 
+ * and every caller gets a new {@link ConfigurationException} with the same {@link Message}s.
+ * The failures are forgotten whenever the {@link ServiceLocator}'s configuration changes.
+ * 
+ * Concurrent resolutions of the same {@link Key} are collapsed into a single resolution.
+ * 
+ * If coalescing is enabled then the first just-in-time resolution for a class (e.g. a 
+ * Jersey resource) is going to resolve all of its other injection points as well and 
+ * commit them in a single configuration.
+ * 
+ * If the {@link Injector} was linked in {@link LinkMode#LAZY} mode then the explicit
+ * {@link Guice} bindings are being exported the first time HK2 asks for their type.
+ * 
+ * @see LinkOptions#isCoalesceJustInTime()
+ * @see GuiceBindingIndex
+ * 
+ * @see DynamicConfigurationListener
  */
-class GuiceJustInTimeResolver implements JustInTimeInjectionResolver {
+@Singleton
+class GuiceJustInTimeResolver implements JustInTimeInjectionResolver, DynamicConfigurationListener {
+  
+  /**
+   * The maximum number of failed {@link Key}s we're going to remember.
+   */
+  static final int MAX_FAILURES = 1024;
+  
+  /**
+   * The maximum number of coalesced classes we're going to remember.
+   */
+  static final int MAX_COALESCED = 1024;
+  
+  private final ConcurrentMap<Key<?>, Collection<Message>> failures = new ConcurrentHashMap<>();
+  
+  private final ConcurrentMap<Key<?>, FutureTask<Boolean>> resolutions = new ConcurrentHashMap<>();
+  
+  private final AtomicLong hitCount = new AtomicLong();
+  
+  private final AtomicLong missCount = new AtomicLong();
+  
+  /**
+   * The classes whose injection points have been coalesced. It's being cleared when it 
+   * reaches {@link #MAX_COALESCED}. Coalescing a class again is harmless because all 
+   * {@link Key}s that have a descriptor by then are being skipped.
+   */
+  private final ConcurrentMap<Class<?>, Boolean> coalesced = new ConcurrentHashMap<>();
   
   private final ServiceLocator locator;
   
   private final Injector injector;
   
+  private final LinkOptions options;
+  
+  private final boolean coalesce;
+  
+  /**
+   * The {@link Guice} bindings that haven't been exported yet or {@code null}.
+   * 
+   * @see LinkMode#LAZY
+   */
+  private final GuiceBindingIndex index;
+  
   public GuiceJustInTimeResolver(ServiceLocator locator, Injector injector) {
+    this(locator, injector, LinkOptions.DEFAULT, null);
+  }
+  
+  /**
+   * @see LinkOptions#isCoalesceJustInTime()
+   * @see LinkMode#LAZY
+   */
+  public GuiceJustInTimeResolver(ServiceLocator locator, Injector injector, 
+      LinkOptions options, GuiceBindingIndex index) {
     this.locator = locator;
     this.injector = injector;
+    this.options = options;
+    this.coalesce = options.isCoalesceJustInTime();
+    this.index = index;
+  }
+  
+  /**
+   * Returns the {@link Injector}.
+   */
+  public Injector getInjector() {
+    return injector;
+  }
+  
+  /**
+   * Returns the {@link LinkOptions} the {@link Injector} was linked with.
+   */
+  public LinkOptions getOptions() {
+    return options;
+  }
+  
+  /**
+   * Returns the hit and miss counters of the failed {@link Key} cache.
+   */
+  public CacheStats getFailureCacheStats() {
+    return new CacheStats(hitCount.get(), missCount.get(), failures.size());
+  }
+  
+  @Override
+  public void configurationChanged() {
+    failures.clear();
+    
+    // Forget about all completed resolutions. The ones that are still in
+    // flight are most likely the cause for this configuration change.
+    Iterator<FutureTask<Boolean>> it = resolutions.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().isDone()) {
+        it.remove();
+      }
+    }
   }
 
   @Override
   public boolean justInTimeResolution(Injectee injectee) {
     Type type = injectee.getRequiredType();
-    Class<?> clazz = MoreTypes.getRawType(type);
+    Class<?> clazz = BindingUtils.getRawType(type);
     
-    if (clazz != null) {
-      Binding<?> binding = findBinding(injectee);
-      if (binding != null) {
-        Key<?> key = binding.getKey();
-        Set<Annotation> qualifiers = BindingUtils.getQualifiers(key);
+    if (clazz == null) {
+      return false;
+    }
+    
+    Key<?> key = BindingUtils.toKey(injectee);
+    if (key == null) {
+      return false;
+    }
+    
+    // Exports all (explicit) Guice bindings of the type in one go.
+    if (index != null && index.materialize(locator, clazz, key)) {
+      return true;
+    }
+    
+    // Many threads may ask for the same (yet unknown) Injectee at the same time. 
+    // Only one of them is going to install the descriptor and all others are 
+    // going to wait for it and reuse its result.
+    FutureTask<Boolean> resolution = new FutureTask<>(
+        new Resolution(injectee, type, clazz, key));
+    
+    FutureTask<Boolean> existing = resolutions.putIfAbsent(key, resolution);
+    if (existing != null) {
+      return await(existing);
+    }
+    
+    boolean success = false;
+    try {
+      resolution.run();
+      success = await(resolution);
+      return success;
+    } finally {
+      // Failures are handled by the failure cache
+      if (!success) {
+        resolutions.remove(key, resolution);
+      }
+    }
+  }
+  
+  /**
+   * Waits for the given {@link FutureTask} to complete and returns its result. It
+   * stops waiting and returns {@code false} if the current thread is interrupted.
+   */
+  private static boolean await(FutureTask<Boolean> resolution) {
+    try {
+      return resolution.get();
+    } catch (InterruptedException err) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException err) {
+      Throwable cause = err.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      } else if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+  
+  /**
+   * Installs a {@link GuiceBindingDescriptor} for the given {@link Injectee} if 
+   * {@link Guice} has (or can create) a {@link Binding} for it.
+   */
+  private boolean resolve(Injectee injectee, Type type, Class<?> clazz, Key<?> key) {
+    Binding<?> binding = findBinding(type, key);
+    if (binding == null) {
+      return false;
+    }
+    
+    // HK2 may have looked for the Key before an earlier (and by now forgotten) 
+    // resolution committed its descriptor. We're holding the claim for the Key 
+    // and nobody else can be committing one at the same time.
+    if (hasDescriptor(key, clazz)) {
+      return true;
+    }
+    
+    GuiceBindingDescriptor<?> descriptor = newDescriptor(type, clazz, binding);
+    
+    if (!coalesce) {
+      ServiceLocatorUtilities.addOneDescriptor(locator, descriptor);
+      return true;
+    }
+    
+    List<GuiceBindingDescriptor<?>> descriptors = new ArrayList<>();
+    descriptors.add(descriptor);
+    
+    // The Claims are being published as we go. They must be completed no matter what 
+    // or everyone who's waiting for them would be waiting forever.
+    Map<Key<?>, Claim> claims = new LinkedHashMap<>();
+    
+    boolean success = false;
+    try {
+      Class<?> injecteeClass = injectee.getInjecteeClass();
+      if (injecteeClass != null && coalesced.putIfAbsent(injecteeClass, Boolean.TRUE) == null) {
+        if (coalesced.size() > MAX_COALESCED) {
+          coalesced.clear();
+        }
         
-        GuiceBindingDescriptor<?> descriptor = new GuiceBindingDescriptor<>(
-            type, clazz, qualifiers, binding);
-        ServiceLocatorUtilities.addOneDescriptor(locator, descriptor);
-        return true;
+        coalesce(injecteeClass, key, descriptors, claims);
+      }
+      
+      DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+      DynamicConfiguration dc = dcs.createDynamicConfiguration();
+      
+      for (GuiceBindingDescriptor<?> other : descriptors) {
+        dc.addActiveDescriptor(other);
+      }
+      
+      dc.commit();
+      success = true;
+      return true;
+      
+    } finally {
+      // Let everyone who's waiting for one of the coalesced Keys know
+      for (Map.Entry<Key<?>, Claim> entry : claims.entrySet()) {
+        complete(entry.getKey(), entry.getValue(), success);
+      }
+    }
+  }
+  
+  /**
+   * Discovers all other (yet unresolved) injection points of the given class and adds 
+   * {@link GuiceBindingDescriptor}s for them to the {@link List}. The idea is that HK2 
+   * is going to ask for them anyways in a moment and we can save a configuration commit 
+   * (and the invalidation of HK2's caches that comes with it) for each one of them.
+   * 
+   * The {@link Claim}s are being added to the {@link Map} as soon as they're published 
+   * and the caller must complete them (even if this method throws).
+   */
+  private void coalesce(Class<?> injecteeClass, Key<?> trigger, 
+      List<GuiceBindingDescriptor<?>> dst, Map<Key<?>, Claim> claims) {
+    Set<Key<?>> keys = new LinkedHashSet<>();
+    
+    TypeLiteral<?> typeLiteral = TypeLiteral.get(injecteeClass);
+    
+    try {
+      addKeys(InjectionPoint.forConstructorOf(typeLiteral), keys);
+    } catch (ConfigurationException ignore) {
+      // Not a class Guice could construct but HK2 can
+    }
+    
+    try {
+      for (InjectionPoint injectionPoint : InjectionPoint.forInstanceMethodsAndFields(typeLiteral)) {
+        addKeys(injectionPoint, keys);
       }
+    } catch (ConfigurationException ignore) {
     }
     
+    keys.remove(trigger);
+    
+    for (Key<?> key : keys) {
+      Type type = key.getTypeLiteral().getType();
+      Class<?> clazz = key.getTypeLiteral().getRawType();
+      
+      if (isProvider(clazz)) {
+        continue;
+      }
+      
+      // Claim the Key the same way justInTimeResolution() does. Skip it if 
+      // someone else is already on it. Everyone who asks for it from now on 
+      // is going to wait for our commit.
+      Claim claim = new Claim();
+      if (resolutions.putIfAbsent(key, claim) != null) {
+        continue;
+      }
+      
+      claims.put(key, claim);
+      
+      if (hasDescriptor(key, clazz)) {
+        claims.remove(key);
+        complete(key, claim, true);
+        continue;
+      }
+      
+      Binding<?> binding = null;
+      try {
+        binding = findBinding(type, key);
+      } catch (ConfigurationException ignore) {
+        // HK2 will come back for it and it will fail like it normally does.
+      }
+      
+      if (binding == null) {
+        claims.remove(key);
+        complete(key, claim, false);
+        continue;
+      }
+      
+      dst.add(newDescriptor(type, clazz, binding));
+    }
+  }
+  
+  /**
+   * Completes the given {@link Claim}. Unsuccessful {@link Claim}s are being 
+   * removed right away the same way unsuccessful resolutions are.
+   */
+  private void complete(Key<?> key, Claim claim, boolean success) {
+    if (!success) {
+      resolutions.remove(key, claim);
+    }
+    
+    claim.complete(success);
+  }
+  
+  /**
+   * Adds the {@link Key}s of all {@link Dependency}s of the given {@link InjectionPoint}.
+   */
+  private static void addKeys(InjectionPoint injectionPoint, Set<Key<?>> dst) {
+    for (Dependency<?> dependency : injectionPoint.getDependencies()) {
+      dst.add(dependency.getKey());
+    }
+  }
+  
+  /**
+   * Returns {@code true} if the {@link ServiceLocator} has already a descriptor 
+   * for the given {@link Key}.
+   * 
+   * NOTE: The contract {@link Filter} matches by the raw class name only. The full
+   * {@link Type} must match as well or one parameterization of a generic class 
+   * (e.g. {@code Gen<String>}) would shadow all others (e.g. {@code Gen<Integer>}).
+   */
+  private boolean hasDescriptor(Key<?> key, Class<?> clazz) {
+    TypeLiteral<?> typeLiteral = key.getTypeLiteral();
+    Set<Annotation> qualifiers = BindingUtils.getQualifiers(key);
+    
+    Filter filter = BuilderHelper.createContractFilter(clazz.getName());
+    for (ActiveDescriptor<?> descriptor : locator.getDescriptors(filter)) {
+      if (hasContract(descriptor, typeLiteral) 
+          && descriptor.getQualifierAnnotations().containsAll(qualifiers)) {
+        return true;
+      }
+    }
     
     return false;
   }
   
   /**
-   * Returns a {@link Guice} {@link Binding} for the given HK2 {@link Injectee}
+   * Returns {@code true} if one of the {@link ActiveDescriptor}'s contracts is the given {@link TypeLiteral}.
+   */
+  private static boolean hasContract(ActiveDescriptor<?> descriptor, TypeLiteral<?> typeLiteral) {
+    for (Type contract : descriptor.getContractTypes()) {
+      if (typeLiteral.equals(TypeLiteral.get(contract))) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * HK2 takes care of {@link Provider}s and {@link IterableProvider}s itself.
+   */
+  private static boolean isProvider(Class<?> clazz) {
+    return clazz == javax.inject.Provider.class
+        || clazz == com.google.inject.Provider.class
+        || clazz == IterableProvider.class;
+  }
+  
+  private static GuiceBindingDescriptor<?> newDescriptor(Type type, Class<?> clazz, Binding<?> binding) {
+    Set<Annotation> qualifiers = BindingUtils.getQualifiers(binding.getKey());
+    return GuiceDescriptorFactory.newDescriptor(type, clazz, qualifiers, binding);
+  }
+  
+  /**
+   * Returns a {@link Guice} {@link Binding} for the given {@link Type} and {@link Key}
    * or {@code null} if there is no such binding (i.e. Guice doesn't have it and
    * doesn't know how to build it).
    */
-  private Binding<?> findBinding(Injectee injectee) {
-    Key<?> key = BindingUtils.toKey(injectee);
-    if (key == null) {
-      return null;
-    }
-    
+  private Binding<?> findBinding(Type type, Key<?> key) {
     // We can't do anything about HK2 @Contracts
-    if (BindingUtils.isHk2Contract(injectee)) {
+    if (BindingUtils.isHk2Contract(type)) {
       return null;
     }
     
     // Classes with a @Contract annotation are SPIs. They either exist or
     // not. They must be explicit bindings in the world of Guice.
-    if (BindingUtils.isJerseyContract(injectee)) {
+    if (BindingUtils.isJerseyContract(type)) {
       return injector.getExistingBinding(key);
     }
     
     // We've to use Injector#getBinding() to cover Just-In-Time bindings
     // which may fail with an Exception because Guice doesn't know how to
     // construct the requested object.
-    return injector.getBinding(key);
+    return getBinding(key);
+  }
+  
+  /**
+   * Calls {@link Injector#getBinding(Key)} unless we know it's going to fail.
+   */
+  private Binding<?> getBinding(Key<?> key) {
+    Collection<Message> messages = failures.get(key);
+    if (messages != null) {
+      hitCount.incrementAndGet();
+      
+      // A new ConfigurationException for every caller. It'd be shared state otherwise.
+      throw new ConfigurationException(messages);
+    }
+    
+    missCount.incrementAndGet();
+    
+    try {
+      return injector.getBinding(key);
+    } catch (ConfigurationException err) {
+      if (failures.size() < MAX_FAILURES) {
+        failures.putIfAbsent(key, err.getErrorMessages());
+      }
+      throw err;
+    }
+  }
+  
+  /**
+   * A coalesced {@link Key}'s placeholder in {@link GuiceJustInTimeResolver#resolutions}.
+   * It's never being run and it's completed by the resolution that claimed it.
+   * 
+   * @see GuiceJustInTimeResolver#coalesce(Class, Key, List, Map)
+   */
+  private static class Claim extends FutureTask<Boolean> {
+    
+    private static final Callable<Boolean> UNUSED = new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        throw new IllegalStateException();
+      }
+    };
+    
+    public Claim() {
+      super(UNUSED);
+    }
+    
+    public void complete(boolean success) {
+      set(success);
+    }
+  }
+  
+  /**
+   * A single (shared) just-in-time resolution.
+   * 
+   * @see GuiceJustInTimeResolver#resolve(Injectee, Type, Class, Key)
+   */
+  private class Resolution implements Callable<Boolean> {
+    
+    private final Injectee injectee;
+    
+    private final Type type;
+    
+    private final Class<?> clazz;
+    
+    private final Key<?> key;
+    
+    public Resolution(Injectee injectee, Type type, Class<?> clazz, Key<?> key) {
+      this.injectee = injectee;
+      this.type = type;
+      this.clazz = clazz;
+      this.key = key;
+    }
+    
+    @Override
+    public Boolean call() {
+      return resolve(injectee, type, clazz, key);
+    }
   }
-}
+}
\ No newline at end of file
@@ -18,6 +18,8 @@ package com.squarespace.jersey2.guice;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Qualifier;
 
@@ -29,6 +31,8 @@ import com.google.inject.Key;
  *
  * NOTE: This class exists just for completeness and debugging.
  *
+ * @see #of(Key)
+ *
  * @see Qualifier
  * @see Key
  */
@@ -36,6 +40,49 @@ import com.google.inject.Key;
 class GuiceQualifier<T> implements Qualifier, Serializable {
 
   private static final long serialVersionUID = 0;
+  
+  /**
+   * The maximum number of {@link GuiceQualifier}s we're going to intern.
+   */
+  static final int MAX_INTERNED = 4096;
+  
+  /**
+   * Interned {@link GuiceQualifier}s. The {@link Key}s hold on to their types (and
+   * {@link ClassLoader}s) and the map is therefore bounded and cleared by 
+   * {@link JerseyGuiceUtils#reset()}.
+   * 
+   * @see #clear()
+   */
+  private static final ConcurrentMap<Key<?>, GuiceQualifier<?>> QUALIFIERS = new ConcurrentHashMap<>();
+  
+  /**
+   * Returns the interned {@link GuiceQualifier} for the given {@link Key}. A new 
+   * {@link GuiceQualifier} is being returned once {@link #MAX_INTERNED} is reached.
+   * That's OK because they match by {@link #annotationType()}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> GuiceQualifier<T> of(Key<T> key) {
+    GuiceQualifier<T> qualifier = (GuiceQualifier<T>)QUALIFIERS.get(key);
+    if (qualifier == null) {
+      qualifier = new GuiceQualifier<>(key);
+      
+      if (QUALIFIERS.size() < MAX_INTERNED) {
+        GuiceQualifier<T> existing = (GuiceQualifier<T>)QUALIFIERS.putIfAbsent(key, qualifier);
+        if (existing != null) {
+          qualifier = existing;
+        }
+      }
+    }
+    
+    return qualifier;
+  }
+  
+  /**
+   * Forgets all interned {@link GuiceQualifier}s.
+   */
+  static void clear() {
+    QUALIFIERS.clear();
+  }
 
   private final Key<T> key;
 
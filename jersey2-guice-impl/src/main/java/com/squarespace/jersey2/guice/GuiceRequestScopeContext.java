@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Context;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.ServiceHandle;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Context} of the {@link GuiceRequestScope}. It uses Jersey's {@link RequestScope} 
+ * if the {@link ServiceLocator} has one and if we're inside a Jersey request. Everything else 
+ * (e.g. a plain {@link ServiceLocator} or {@link com.google.inject.servlet.ServletScopes#scopeRequest}) 
+ * asks {@link com.google.inject.Guice} like the {@link GuiceScopeContext} does.
+ * 
+ * NOTE: Jersey adds its {@link RequestScope} to the {@link ServiceLocator} after it has been 
+ * linked. It's therefore being looked up lazily and a miss is only remembered until the 
+ * {@link ServiceLocator}'s configuration changes. The lookup goes by descriptor because 
+ * {@link ServiceLocator#getService(Class, Annotation...)} would ask the just-in-time 
+ * resolver and {@link com.google.inject.Guice} would happily create a {@link RequestScope} 
+ * of its own.
+ * 
+ * NOTE: Every linked {@link ServiceLocator} has its own {@link GuiceRequestScopeContext}
+ * with {@link org.glassfish.hk2.api.DescriptorVisibility#LOCAL} visibility.
+ * 
+ * NOTE: HK2 requires {@link DynamicConfigurationListener}s to be in the {@link Singleton} scope.
+ */
+@Singleton
+class GuiceRequestScopeContext implements Context<GuiceRequestScope>, DynamicConfigurationListener {
+  
+  private static final Logger LOG = LoggerFactory.getLogger(GuiceRequestScopeContext.class);
+  
+  /**
+   * Jersey's {@link RequestScope} keeps the current request in a private {@link ThreadLocal}.
+   * It's the only way to tell if we're inside a request without provoking an exception.
+   * It's {@code null} if this version of Jersey doesn't have it.
+   */
+  private static final Field CURRENT_SCOPE_INSTANCE = getCurrentScopeInstanceField();
+  
+  private final ServiceLocator locator;
+  
+  private volatile RequestScope requestScope;
+  
+  /**
+   * The {@link RequestScope}'s {@link ThreadLocal} or {@code null}.
+   * 
+   * @see #CURRENT_SCOPE_INSTANCE
+   */
+  private volatile ThreadLocal<?> currentScopeInstance;
+  
+  /**
+   * Gets incremented whenever the {@link ServiceLocator}'s configuration changes.
+   */
+  private final AtomicLong generation = new AtomicLong();
+  
+  /**
+   * The {@link #generation} in which we didn't find a {@link RequestScope}.
+   */
+  private volatile long missing = -1L;
+  
+  public GuiceRequestScopeContext(ServiceLocator locator) {
+    this.locator = locator;
+  }
+  
+  @Override
+  public Class<? extends Annotation> getScope() {
+    return GuiceRequestScope.class;
+  }
+
+  @Override
+  public <U> U findOrCreate(ActiveDescriptor<U> descriptor, ServiceHandle<?> root) {
+    RequestScope requestScope = getRequestScope();
+    if (requestScope != null && isInRequest(requestScope)) {
+      return requestScope.findOrCreate(descriptor, root);
+    }
+    
+    return descriptor.create(root);
+  }
+
+  @Override
+  public boolean containsKey(ActiveDescriptor<?> descriptor) {
+    RequestScope requestScope = getRequestScope();
+    if (requestScope != null && isInRequest(requestScope)) {
+      return requestScope.containsKey(descriptor);
+    }
+    
+    return false;
+  }
+
+  @Override
+  public void destroyOne(ActiveDescriptor<?> descriptor) {
+    RequestScope requestScope = getRequestScope();
+    if (requestScope != null && isInRequest(requestScope)) {
+      requestScope.destroyOne(descriptor);
+    }
+  }
+
+  @Override
+  public boolean supportsNullCreation() {
+    return false;
+  }
+
+  @Override
+  public boolean isActive() {
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+  }
+  
+  @Override
+  public void configurationChanged() {
+    // Jersey may have added its RequestScope
+    generation.incrementAndGet();
+  }
+  
+  /**
+   * Returns Jersey's {@link RequestScope} or {@code null} if the {@link ServiceLocator} 
+   * doesn't have one (yet).
+   */
+  private RequestScope getRequestScope() {
+    RequestScope requestScope = this.requestScope;
+    if (requestScope == null) {
+      long generation = this.generation.get();
+      if (missing == generation) {
+        return null;
+      }
+      
+      ActiveDescriptor<?> descriptor = locator.getBestDescriptor(
+          BuilderHelper.createContractFilter(RequestScope.class.getName()));
+      
+      if (descriptor == null) {
+        missing = generation;
+        return null;
+      }
+      
+      requestScope = (RequestScope)locator.getServiceHandle(descriptor).getService();
+      this.currentScopeInstance = getCurrentScopeInstance(requestScope);
+      this.requestScope = requestScope;
+    }
+    return requestScope;
+  }
+  
+  /**
+   * Returns {@code true} if the current thread is inside a Jersey request.
+   */
+  private boolean isInRequest(RequestScope requestScope) {
+    if (!requestScope.isActive()) {
+      return false;
+    }
+    
+    ThreadLocal<?> currentScopeInstance = this.currentScopeInstance;
+    if (currentScopeInstance != null) {
+      return currentScopeInstance.get() != null;
+    }
+    
+    // A version of Jersey we don't know the internals of
+    try {
+      requestScope.referenceCurrent().release();
+      return true;
+    } catch (IllegalStateException err) {
+      return false;
+    }
+  }
+  
+  private static ThreadLocal<?> getCurrentScopeInstance(RequestScope requestScope) {
+    if (CURRENT_SCOPE_INSTANCE == null) {
+      return null;
+    }
+    
+    try {
+      return (ThreadLocal<?>)CURRENT_SCOPE_INSTANCE.get(requestScope);
+    } catch (IllegalAccessException err) {
+      LOG.error("Exception", err);
+      return null;
+    }
+  }
+  
+  private static Field getCurrentScopeInstanceField() {
+    try {
+      Field field = RequestScope.class.getDeclaredField("currentScopeInstance");
+      if (!ThreadLocal.class.isAssignableFrom(field.getType())) {
+        return null;
+      }
+      
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException | SecurityException err) {
+      LOG.warn("Jersey's RequestScope has no currentScopeInstance field", err);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.io.IOException;
+import java.security.Principal;
+
+import javax.inject.Singleton;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.jersey.server.ContainerRequest;
+
+import com.google.inject.Guice;
+import com.google.inject.Key;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletScopes;
+
+/**
+ * A {@link ContainerRequestFilter} that puts Jersey's request objects straight 
+ * into {@link Guice}'s {@link RequestScoped} scope. It's being done once per 
+ * request and {@link Guice} will find them in its scope instead of asking the 
+ * {@link ServiceLocator} for them.
+ * 
+ * {@link ServletScopes#REQUEST} keeps its objects as attributes of the
+ * {@code HttpServletRequest} by their {@link Key#toString()} names. Jersey's 
+ * servlet container backs the {@link ContainerRequestContext}'s properties 
+ * with the same attributes. Nothing happens in other containers and 
+ * {@link JerseyGuiceModule} falls back to the {@link ServiceLocator}.
+ * 
+ * @see JerseyGuiceModule
+ */
+@Singleton
+@PreMatching
+class GuiceRequestScopeFilter implements ContainerRequestFilter {
+  
+  private static final String URI_INFO = Key.get(UriInfo.class).toString();
+  
+  private static final String HTTP_HEADERS = Key.get(HttpHeaders.class).toString();
+  
+  private static final String SECURITY_CONTEXT = Key.get(SecurityContext.class).toString();
+  
+  private static final String REQUEST = Key.get(Request.class).toString();
+  
+  @Override
+  public void filter(ContainerRequestContext context) throws IOException {
+    context.setProperty(URI_INFO, context.getUriInfo());
+    context.setProperty(REQUEST, context.getRequest());
+    
+    // Filters may replace the SecurityContext later on.
+    context.setProperty(SECURITY_CONTEXT, new RequestSecurityContext(context));
+    
+    if (context instanceof ContainerRequest) {
+      context.setProperty(HTTP_HEADERS, context);
+    }
+  }
+  
+  /**
+   * A {@link SecurityContext} that delegates to the {@link ContainerRequestContext}'s
+   * current {@link SecurityContext}.
+   */
+  private static class RequestSecurityContext implements SecurityContext {
+    
+    private final ContainerRequestContext context;
+    
+    public RequestSecurityContext(ContainerRequestContext context) {
+      this.context = context;
+    }
+    
+    @Override
+    public Principal getUserPrincipal() {
+      return context.getSecurityContext().getUserPrincipal();
+    }
+    
+    @Override
+    public boolean isUserInRole(String role) {
+      return context.getSecurityContext().isUserInRole(role);
+    }
+    
+    @Override
+    public boolean isSecure() {
+      return context.getSecurityContext().isSecure();
+    }
+    
+    @Override
+    public String getAuthenticationScheme() {
+      return context.getSecurityContext().getAuthenticationScheme();
+    }
+  }
+}
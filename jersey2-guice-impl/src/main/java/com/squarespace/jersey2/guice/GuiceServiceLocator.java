@@ -16,16 +16,297 @@
 
 package com.squarespace.jersey2.guice;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.IterableProvider;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
 import org.jvnet.hk2.internal.ServiceLocatorImpl;
+import org.jvnet.hk2.internal.Utilities;
 
 /**
- * An extension of {@link ServiceLocatorImpl} that exist primarily for type 
- * information and completeness in respect to the other classes.
+ * An extension of {@link ServiceLocatorImpl} with a fast path for 
+ * {@link #getService(Class, Annotation...)} and {@link #getService(Type, Annotation...)}.
+ * 
+ * The {@link ActiveDescriptor}s of these lookups are being cached by their contract 
+ * and qualifiers. A hit is a single {@link ConcurrentMap} read and it skips HK2's 
+ * general descriptor search. The cache is being invalidated by a 
+ * {@link DynamicConfigurationListener} whenever this {@link ServiceLocator}'s 
+ * configuration changes.
+ * 
+ * NOTE: Only {@link ActiveDescriptor}s that are owned by this {@link ServiceLocator} 
+ * are being cached. The parent's configuration changes are not visible to the
+ * {@link DynamicConfigurationListener} and a {@link GuiceServiceLocator} invalidates
+ * its children's caches along with its own. The cache is being bypassed if any of
+ * the ancestors is not a {@link GuiceServiceLocator}.
+ * 
+ * @see JerseyGuiceUtils#getLookupCacheStats(ServiceLocator)
  */
 class GuiceServiceLocator extends ServiceLocatorImpl {
-
+  
+  private final ConcurrentMap<Type, ActiveDescriptor<?>> unqualified = new ConcurrentHashMap<>();
+  
+  private final ConcurrentMap<QualifiedKey, ActiveDescriptor<?>> qualified = new ConcurrentHashMap<>();
+  
+  /**
+   * Gets incremented whenever the cache is being invalidated.
+   */
+  private final AtomicLong generation = new AtomicLong();
+  
+  private final AtomicLong hitCount = new AtomicLong();
+  
+  private final AtomicLong missCount = new AtomicLong();
+  
+  /**
+   * The {@link GuiceServiceLocator}s whose lookup caches must be invalidated along with ours.
+   */
+  private final Set<GuiceServiceLocator> children 
+      = Collections.newSetFromMap(new ConcurrentHashMap<GuiceServiceLocator, Boolean>());
+  
+  /**
+   * The parent if it's a {@link GuiceServiceLocator}.
+   */
+  private final GuiceServiceLocator parent;
+  
+  /**
+   * Is {@code false} if the configuration changes of any of the ancestors are not visible to us.
+   */
+  private final boolean cacheable;
+  
+  private volatile boolean shutdown = false;
+  
+  /**
+   * @see #setName(String)
+   */
+  private volatile String name;
+  
   public GuiceServiceLocator(String name, ServiceLocator parent) {
     super(name, (ServiceLocatorImpl)parent);
+    this.name = name;
+    
+    if (parent instanceof GuiceServiceLocator) {
+      this.parent = (GuiceServiceLocator)parent;
+      this.cacheable = this.parent.cacheable;
+      this.parent.children.add(this);
+    } else {
+      this.parent = null;
+      this.cacheable = (parent == null);
+    }
+  }
+  
+  @Override
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * Renames the {@link ServiceLocator}. HK2's {@link ServiceLocatorFactory} keeps track
+   * of its {@link ServiceLocator}s by name and a pooled {@link ServiceLocator} must 
+   * assume the name it's being handed out for.
+   * 
+   * NOTE: {@link ServiceLocatorImpl} keeps the name it was constructed with in a private 
+   * field. {@link #getName()} and {@link #toString()} are therefore being overridden.
+   * 
+   * @see GuiceServiceLocatorPool
+   */
+  void setName(String name) {
+    this.name = name;
+  }
+  
+  /**
+   * Creates and returns a {@link DynamicConfigurationListener} that 
+   * invalidates this {@link ServiceLocator}'s lookup cache.
+   * 
+   * @see JerseyGuiceUtils#newServiceLocator(String, ServiceLocator)
+   */
+  DynamicConfigurationListener newCacheInvalidator() {
+    return new CacheInvalidator(this);
+  }
+  
+  /**
+   * Returns the {@link CacheStats} of the lookup cache.
+   */
+  public CacheStats getLookupCacheStats() {
+    return new CacheStats(hitCount.get(), missCount.get(), unqualified.size() + qualified.size());
+  }
+  
+  /**
+   * Invalidates the lookup cache and the caches of all descendants.
+   */
+  void invalidate() {
+    generation.incrementAndGet();
+    unqualified.clear();
+    qualified.clear();
+    
+    for (GuiceServiceLocator child : children) {
+      child.invalidate();
+    }
+  }
+  
+  @Override
+  public <T> T getService(Class<T> contractOrImpl, Annotation... qualifiers) throws MultiException {
+    return getService((Type)contractOrImpl, qualifiers);
+  }
+  
+  @Override
+  public <T> T getService(Type contractOrImpl, Annotation... qualifiers) throws MultiException {
+    if (!cacheable || shutdown || contractOrImpl == null || qualifiers == null) {
+      return super.getService(contractOrImpl, qualifiers);
+    }
+    
+    QualifiedKey key = null;
+    
+    ActiveDescriptor<?> descriptor = null;
+    if (qualifiers.length == 0) {
+      descriptor = unqualified.get(contractOrImpl);
+    } else {
+      key = new QualifiedKey(contractOrImpl, qualifiers);
+      descriptor = qualified.get(key);
+    }
+    
+    Class<?> rawType = ReflectionHelper.getRawClass(contractOrImpl);
+    
+    if (descriptor != null) {
+      hitCount.incrementAndGet();
+      return createService(descriptor, rawType);
+    }
+    
+    if (rawType == null || rawType == Provider.class || rawType == IterableProvider.class) {
+      return super.getService(contractOrImpl, qualifiers);
+    }
+    
+    missCount.incrementAndGet();
+    
+    long expected = generation.get();
+    
+    ServiceHandle<T> handle = getServiceHandle(contractOrImpl, qualifiers);
+    if (handle == null) {
+      return null;
+    }
+    
+    descriptor = handle.getActiveDescriptor();
+    if (isOwner(descriptor)) {
+      if (key == null) {
+        unqualified.put(contractOrImpl, descriptor);
+      } else {
+        qualified.put(key, descriptor);
+      }
+      
+      // The configuration has changed while we were looking it up.
+      if (generation.get() != expected) {
+        invalidate();
+      }
+    }
+    
+    return createService(descriptor, rawType);
+  }
+  
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    invalidate();
+    
+    if (parent != null) {
+      parent.children.remove(this);
+    }
+    
+    super.shutdown();
+  }
+  
+  /**
+   * The same as {@link ServiceLocatorImpl#toString()} but with the current name.
+   */
+  @Override
+  public String toString() {
+    return "GuiceServiceLocator(" + name + "," + getLocatorId() + "," + System.identityHashCode(this) + ")";
+  }
+  
+  /**
+   * Creates the service the same way as {@link ServiceLocatorImpl#getService(Type, Annotation...)}.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T createService(ActiveDescriptor<?> descriptor, Class<?> rawType) {
+    return Utilities.createService((ActiveDescriptor<T>)descriptor, null, this, null, rawType);
+  }
+  
+  /**
+   * Returns {@code true} if this {@link ServiceLocator} owns the given {@link ActiveDescriptor}.
+   */
+  private boolean isOwner(ActiveDescriptor<?> descriptor) {
+    Long locatorId = descriptor.getLocatorId();
+    return locatorId != null && locatorId.longValue() == getLocatorId();
+  }
+  
+  /**
+   * The key of a qualified lookup.
+   */
+  private static class QualifiedKey {
+    
+    private final Type type;
+    
+    private final List<Annotation> qualifiers;
+    
+    private final int hashCode;
+    
+    public QualifiedKey(Type type, Annotation[] qualifiers) {
+      this.type = type;
+      this.qualifiers = Arrays.asList(qualifiers);
+      this.hashCode = 31 * type.hashCode() + this.qualifiers.hashCode();
+    }
+    
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      } else if (!(o instanceof QualifiedKey)) {
+        return false;
+      }
+      
+      QualifiedKey other = (QualifiedKey)o;
+      return hashCode == other.hashCode 
+          && type.equals(other.type) 
+          && qualifiers.equals(other.qualifiers);
+    }
+  }
+  
+  /**
+   * Invalidates the {@link GuiceServiceLocator}'s lookup cache.
+   * 
+   * NOTE: HK2 requires {@link DynamicConfigurationListener}s to be in the {@link Singleton} scope.
+   */
+  @Singleton
+  static class CacheInvalidator implements DynamicConfigurationListener {
+    
+    private final GuiceServiceLocator locator;
+    
+    public CacheInvalidator(GuiceServiceLocator locator) {
+      this.locator = locator;
+    }
+    
+    @Override
+    public void configurationChanged() {
+      locator.invalidate();
+    }
   }
 }
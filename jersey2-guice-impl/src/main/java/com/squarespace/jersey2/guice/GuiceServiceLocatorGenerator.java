@@ -33,10 +33,27 @@ class GuiceServiceLocatorGenerator implements ServiceLocatorGenerator {
   
   private final AtomicReference<ServiceLocatorGenerator> delegateRef = new AtomicReference<>();
   
+  private final AtomicReference<GuiceServiceLocatorPool> poolRef = new AtomicReference<>();
+  
   public void delegate(ServiceLocatorGenerator delegate) {
     delegateRef.set(delegate);
   }
   
+  /**
+   * Replaces the current {@link GuiceServiceLocatorPool} (if any) with the given one.
+   * The current {@link GuiceServiceLocatorPool} is being shut down.
+   */
+  public void pool(GuiceServiceLocatorPool pool) {
+    GuiceServiceLocatorPool current = poolRef.getAndSet(pool);
+    if (current != null) {
+      current.shutdown();
+    }
+  }
+  
+  public GuiceServiceLocatorPool pool() {
+    return poolRef.get();
+  }
+  
   public void add(ServiceLocator locator) {
     String name = locator.getName();
     
@@ -52,6 +69,7 @@ class GuiceServiceLocatorGenerator implements ServiceLocatorGenerator {
   public void reset() {
     locators.clear();
     delegateRef.set(null);
+    pool(null);
   }
   
   @Override
@@ -73,6 +91,15 @@ class GuiceServiceLocatorGenerator implements ServiceLocatorGenerator {
       }
     }
     
+    // A pre-built ServiceLocator saves the caller the construction.
+    GuiceServiceLocatorPool pool = poolRef.get();
+    if (pool != null && parent == null) {
+      locator = pool.poll(name);
+      if (locator != null) {
+        return locator;
+      }
+    }
+    
     return generator.create(name, parent);
   }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of pre-built {@link GuiceServiceLocator}s. A background thread keeps the pool 
+ * filled and the {@link GuiceServiceLocatorGenerator} hands them out instead of building 
+ * new {@link ServiceLocator}s on the caller's thread. Idle {@link ServiceLocator}s that 
+ * are older than the max age are being evicted and shut down.
+ * 
+ * NOTE: Only {@link ServiceLocator}s without a parent can be pooled. HK2 sets the 
+ * parent when the {@link ServiceLocator} is being constructed.
+ * 
+ * @see JerseyGuiceUtils#enableServiceLocatorPool(int, long, TimeUnit)
+ */
+class GuiceServiceLocatorPool {
+  
+  private static final Logger LOG = LoggerFactory.getLogger(GuiceServiceLocatorPool.class);
+  
+  private static final String PREFIX = "GuiceServiceLocatorPool-";
+  
+  private final BlockingQueue<Entry> queue;
+  
+  private final long maxAgeNanos;
+  
+  private final ScheduledExecutorService executor;
+  
+  /**
+   * Is {@code true} while there is a fill task scheduled or running.
+   */
+  private final AtomicBoolean filling = new AtomicBoolean();
+  
+  private final AtomicLong hitCount = new AtomicLong();
+  
+  private final AtomicLong missCount = new AtomicLong();
+  
+  private final AtomicLong evictionCount = new AtomicLong();
+  
+  private volatile boolean shutdown = false;
+  
+  private final Runnable filler = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        while (!shutdown && queue.remainingCapacity() > 0) {
+          GuiceServiceLocator locator = (GuiceServiceLocator)JerseyGuiceUtils.newServiceLocator(PREFIX, null);
+          if (!queue.offer(new Entry(locator))) {
+            locator.shutdown();
+            break;
+          }
+        }
+      } catch (RuntimeException err) {
+        LOG.error("Failed to fill the ServiceLocator pool", err);
+        filling.set(false);
+        return;
+      }
+      
+      filling.set(false);
+      
+      if (shutdown) {
+        clear();
+        
+      // Somebody may have taken a ServiceLocator after the loop but before we reset the flag
+      } else if (queue.remainingCapacity() > 0) {
+        fill();
+      }
+    }
+  };
+  
+  private final Runnable evictor = new Runnable() {
+    @Override
+    public void run() {
+      long now = System.nanoTime();
+      
+      Iterator<Entry> it = queue.iterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        if (entry.isExpired(now, maxAgeNanos) && queue.remove(entry)) {
+          evict(entry);
+        }
+      }
+      
+      fill();
+    }
+  };
+  
+  /**
+   * Creates a {@link GuiceServiceLocatorPool} of the given size. Idle {@link ServiceLocator}s
+   * are being evicted after the given max age.
+   */
+  public GuiceServiceLocatorPool(int size, long maxAge, TimeUnit unit) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("size=" + size);
+    }
+    
+    if (maxAge <= 0L) {
+      throw new IllegalArgumentException("maxAge=" + maxAge);
+    }
+    
+    this.queue = new ArrayBlockingQueue<>(size);
+    this.maxAgeNanos = unit.toNanos(maxAge);
+    
+    this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, GuiceServiceLocatorPool.class.getSimpleName());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    
+    executor.scheduleWithFixedDelay(evictor, maxAge, maxAge, unit);
+    fill();
+  }
+  
+  /**
+   * Takes a {@link ServiceLocator} from the pool and renames it to the given name.
+   * Returns {@code null} if the pool is empty.
+   */
+  public ServiceLocator poll(String name) {
+    long now = System.nanoTime();
+    
+    Entry entry = null;
+    while ((entry = queue.poll()) != null) {
+      if (entry.isExpired(now, maxAgeNanos)) {
+        evict(entry);
+        continue;
+      }
+      
+      hitCount.incrementAndGet();
+      fill();
+      
+      entry.locator.setName(name);
+      return entry.locator;
+    }
+    
+    missCount.incrementAndGet();
+    fill();
+    
+    return null;
+  }
+  
+  /**
+   * Returns the {@link CacheStats} of the pool. A hit is a {@link ServiceLocator}
+   * that was taken from the pool and the size is the number of idle 
+   * {@link ServiceLocator}s.
+   */
+  public CacheStats getStats() {
+    return new CacheStats(hitCount.get(), missCount.get(), queue.size());
+  }
+  
+  /**
+   * Returns the number of {@link ServiceLocator}s that were evicted.
+   */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+  
+  /**
+   * Stops the background thread and shuts down all idle {@link ServiceLocator}s.
+   */
+  public void shutdown() {
+    shutdown = true;
+    executor.shutdownNow();
+    clear();
+  }
+  
+  private void fill() {
+    if (!shutdown && filling.compareAndSet(false, true)) {
+      try {
+        executor.execute(filler);
+      } catch (RejectedExecutionException err) {
+        filling.set(false);
+      }
+    }
+  }
+  
+  private void evict(Entry entry) {
+    evictionCount.incrementAndGet();
+    entry.locator.shutdown();
+  }
+  
+  private void clear() {
+    Entry entry = null;
+    while ((entry = queue.poll()) != null) {
+      entry.locator.shutdown();
+    }
+  }
+  
+  private static class Entry {
+    
+    private final GuiceServiceLocator locator;
+    
+    private final long creationTime = System.nanoTime();
+    
+    public Entry(GuiceServiceLocator locator) {
+      this.locator = locator;
+    }
+    
+    public boolean isExpired(long now, long maxAgeNanos) {
+      return (now - creationTime) >= maxAgeNanos;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static com.squarespace.jersey2.guice.BindingUtils.newGuiceInjectionResolverDescriptor;
+import static com.squarespace.jersey2.guice.BindingUtils.newThreeThirtyInjectionResolverDescriptor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Descriptor;
+import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.InjectionResolver;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.jvnet.hk2.external.generator.ServiceLocatorGeneratorImpl;
+import org.jvnet.hk2.internal.ConstantActiveDescriptor;
+import org.jvnet.hk2.internal.DefaultClassAnalyzer;
+import org.jvnet.hk2.internal.DynamicConfigurationImpl;
+import org.jvnet.hk2.internal.DynamicConfigurationServiceImpl;
+import org.jvnet.hk2.internal.InstantiationServiceImpl;
+import org.jvnet.hk2.internal.ServiceLocatorRuntimeImpl;
+import org.jvnet.hk2.internal.Utilities;
+
+/**
+ * A template for {@link GuiceServiceLocator}s. The immutable parts of the bootstrap 
+ * configuration are being computed once and every new {@link ServiceLocator} is 
+ * being stamped out from them. The class {@link Descriptor}s don't require any 
+ * reflection and the constant {@link ActiveDescriptor}s reuse their contracts, 
+ * qualifiers and scope. Only the actual services are being created per 
+ * {@link ServiceLocator}.
+ * 
+ * NOTE: This code should be very similar to HK2's own {@link ServiceLocatorGeneratorImpl}.
+ * 
+ * @see JerseyGuiceUtils#newServiceLocator(String, ServiceLocator)
+ */
+class GuiceServiceLocatorPrototype {
+  
+  private final Descriptor dynamicConfigurationService 
+      = BuilderHelper.link(DynamicConfigurationServiceImpl.class, false)
+        .to(DynamicConfigurationService.class)
+        .in(Singleton.class.getName())
+        .localOnly()
+        .build();
+  
+  private final Descriptor serviceLocatorRuntime 
+      = BuilderHelper.createDescriptorFromClass(ServiceLocatorRuntimeImpl.class);
+  
+  private final ConstantTemplate cacheInvalidator 
+      = new ConstantTemplate(new GuiceServiceLocator.CacheInvalidator(null));
+  
+  private final ConstantTemplate classAnalyzer
+      = new ConstantTemplate(new DefaultClassAnalyzer(null));
+  
+  private final ConstantTemplate instantiationService
+      = new ConstantTemplate(new InstantiationServiceImpl());
+  
+  /**
+   * Creates and returns a {@link GuiceServiceLocator}.
+   */
+  public GuiceServiceLocator newServiceLocator(String name, ServiceLocator parent) {
+    GuiceServiceLocator locator = new GuiceServiceLocator(name, parent);
+    
+    DynamicConfigurationImpl config = new DynamicConfigurationImpl(locator);
+    
+    config.bind(Utilities.getLocatorDescriptor(locator));
+    config.bind(cacheInvalidator.newDescriptor(locator, locator.newCacheInvalidator()));
+    
+    ActiveDescriptor<InjectionResolver<javax.inject.Inject>> threeThirtyResolver 
+      = newThreeThirtyInjectionResolverDescriptor(locator);
+    
+    config.addActiveDescriptor(threeThirtyResolver);
+    config.addActiveDescriptor(newGuiceInjectionResolverDescriptor(
+        locator, threeThirtyResolver));
+    
+    // The Descriptors are being deep copied by the DynamicConfiguration
+    config.bind(dynamicConfigurationService);
+    
+    config.bind(classAnalyzer.newDescriptor(locator, new DefaultClassAnalyzer(locator)));
+    
+    config.bind(serviceLocatorRuntime);
+    
+    // NOTE: The InstantiationService is local to each ServiceLocator
+    config.bind(instantiationService.newDescriptor(locator, new InstantiationServiceImpl()));
+    
+    config.commit();
+    return locator;
+  }
+  
+  /**
+   * The reflective parts of {@link BuilderHelper#createConstantDescriptor(Object)}.
+   */
+  private static class ConstantTemplate {
+    
+    private final Set<Type> contracts;
+    
+    private final Class<? extends Annotation> scope;
+    
+    private final String name;
+    
+    private final Set<Annotation> qualifiers;
+    
+    private final DescriptorVisibility visibility;
+    
+    private final int ranking;
+    
+    private final Boolean proxy;
+    
+    private final Boolean proxyForSameScope;
+    
+    private final String analyzerName;
+    
+    private final Map<String, List<String>> metadata;
+    
+    public ConstantTemplate(Object prototype) {
+      AbstractActiveDescriptor<?> descriptor = BuilderHelper.createConstantDescriptor(prototype);
+      
+      this.contracts = descriptor.getContractTypes();
+      this.scope = descriptor.getScopeAnnotation();
+      this.name = descriptor.getName();
+      this.qualifiers = descriptor.getQualifierAnnotations();
+      this.visibility = descriptor.getDescriptorVisibility();
+      this.ranking = descriptor.getRanking();
+      this.proxy = descriptor.isProxiable();
+      this.proxyForSameScope = descriptor.isProxyForSameScope();
+      this.analyzerName = descriptor.getClassAnalysisName();
+      this.metadata = descriptor.getMetadata();
+    }
+    
+    /**
+     * NOTE: The {@link ActiveDescriptor} makes copies of the contracts, qualifiers and metadata.
+     */
+    public <T> ActiveDescriptor<T> newDescriptor(ServiceLocator locator, T constant) {
+      return new ConstantActiveDescriptor<T>(constant, contracts, scope, name, qualifiers, 
+          visibility, ranking, proxy, proxyForSameScope, analyzerName, 
+          locator.getLocatorId(), metadata);
+    }
+  }
+}
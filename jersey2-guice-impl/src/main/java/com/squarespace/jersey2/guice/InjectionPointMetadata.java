@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.glassfish.hk2.api.Injectee;
+
+import com.google.inject.BindingAnnotation;
+import com.google.inject.Guice;
+import com.google.inject.Key;
+import com.google.inject.internal.Nullability;
+
+/**
+ * Precomputed (and immutable) metadata of an injection point. An injection point is 
+ * either a {@link Field} or a parameter of a {@link Method} or {@link Constructor}.
+ * 
+ * {@link Method#getParameterAnnotations()} and friends return a copy of the annotations
+ * on each call. The {@link InjectionPointMetadata} is computed once per injection point 
+ * and saves us these allocations on each (request scoped) injection.
+ * 
+ * The metadata is held in a {@link ClassValue} of the declaring class and it doesn't 
+ * prevent the class (and its {@link ClassLoader}) from being garbage collected.
+ * 
+ * @see BindingUtils#isNullable(Injectee)
+ * @see BindingUtils#toKey(Injectee)
+ */
+class InjectionPointMetadata {
+  
+  private static final ClassValue<ConcurrentMap<Member, InjectionPointMetadata[]>> CACHE 
+      = new ClassValue<ConcurrentMap<Member, InjectionPointMetadata[]>>() {
+    @Override
+    protected ConcurrentMap<Member, InjectionPointMetadata[]> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+  
+  /**
+   * Returns the {@link InjectionPointMetadata} for the given {@link AnnotatedElement} 
+   * and position or {@code null} if it's not a {@link Field}, {@link Method} or 
+   * {@link Constructor}.
+   * 
+   * NOTE: The position is ignored for {@link Field}s.
+   */
+  public static InjectionPointMetadata get(AnnotatedElement element, int position) {
+    if (!(element instanceof Member)) {
+      return null;
+    }
+    
+    Member member = (Member)element;
+    
+    ConcurrentMap<Member, InjectionPointMetadata[]> metadatas 
+        = CACHE.get(member.getDeclaringClass());
+    
+    InjectionPointMetadata[] array = metadatas.get(member);
+    if (array == null) {
+      array = newMetadata(element);
+      if (array == null) {
+        return null;
+      }
+      
+      InjectionPointMetadata[] existing = metadatas.putIfAbsent(member, array);
+      if (existing != null) {
+        array = existing;
+      }
+    }
+    
+    if (element instanceof Field) {
+      return array[0];
+    }
+    
+    return array[position];
+  }
+  
+  /**
+   * Computes the {@link InjectionPointMetadata} for the {@link Field} or for all 
+   * parameters of the {@link Method} or {@link Constructor}.
+   */
+  private static InjectionPointMetadata[] newMetadata(AnnotatedElement element) {
+    boolean guiceOptional = isGuiceOptional(element);
+    
+    if (element instanceof Field) {
+      Annotation[] annotations = ((Field)element).getAnnotations();
+      return new InjectionPointMetadata[] { 
+          new InjectionPointMetadata(guiceOptional, annotations) 
+      };
+    }
+    
+    Annotation[][] annotations = null;
+    if (element instanceof Method) {
+      annotations = ((Method)element).getParameterAnnotations();
+      
+    } else if (element instanceof Constructor<?>) {
+      annotations = ((Constructor<?>)element).getParameterAnnotations();
+    
+    } else {
+      return null;
+    }
+    
+    InjectionPointMetadata[] dst = new InjectionPointMetadata[annotations.length];
+    for (int i = 0; i < annotations.length; i++) {
+      dst[i] = new InjectionPointMetadata(guiceOptional, annotations[i]);
+    }
+    
+    return dst;
+  }
+  
+  /**
+   * Returns {@code true} if the given {@link AnnotatedElement} has a
+   * {@link com.google.inject.Inject} {@link Annotation} and it's marked 
+   * as being optional.
+   * 
+   * @see com.google.inject.Inject#optional()
+   */
+  private static boolean isGuiceOptional(AnnotatedElement element) {
+    com.google.inject.Inject inject = element.getAnnotation(com.google.inject.Inject.class);
+    
+    if (inject != null) {
+      return inject.optional();
+    }
+    
+    return false;
+  }
+  
+  /**
+   * Returns the first {@link Annotation} from the given array that
+   * is a {@link BindingAnnotation}.
+   * 
+   * @see BindingAnnotation
+   */
+  private static Annotation getBindingAnnotation(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      Class<? extends Annotation> type = annotation.annotationType();
+      if (type.isAnnotationPresent(BindingAnnotation.class)) {
+        return annotation;
+      }
+    }
+    
+    return null;
+  }
+  
+  private final boolean guiceOptional;
+  
+  private final boolean nullable;
+  
+  private final Annotation bindingAnnotation;
+  
+  /**
+   * The most recently derived {@link Key}.
+   * 
+   * @see #getKey(Type, Set)
+   */
+  private volatile DerivedKey derivedKey;
+  
+  private InjectionPointMetadata(boolean guiceOptional, Annotation[] annotations) {
+    this.guiceOptional = guiceOptional;
+    this.nullable = Nullability.allowsNull(annotations);
+    this.bindingAnnotation = getBindingAnnotation(annotations);
+  }
+  
+  /**
+   * Returns {@code true} if the injection point is a {@link Guice} optional injection point.
+   * 
+   * @see com.google.inject.Inject#optional()
+   */
+  public boolean isGuiceOptional() {
+    return guiceOptional;
+  }
+  
+  /**
+   * Returns {@code true} if the injection point has a {@code @Nullable} annotation.
+   * 
+   * @see Nullability#allowsNull(Annotation[])
+   */
+  public boolean isNullable() {
+    return nullable;
+  }
+  
+  /**
+   * Returns the {@link BindingAnnotation} of the injection point or {@code null}.
+   */
+  public Annotation getBindingAnnotation() {
+    return bindingAnnotation;
+  }
+  
+  /**
+   * Returns a (possibly cached) {@link Key} for the given required {@link Type} 
+   * and {@link Set} of required qualifiers.
+   * 
+   * NOTE: The required {@link Type} of an injection point is usually always the 
+   * same but it may be different for a generic injection point.
+   */
+  public Key<?> getKey(Type type, Set<Annotation> requiredQualifiers) {
+    DerivedKey derivedKey = this.derivedKey;
+    if (derivedKey != null && derivedKey.matches(type, requiredQualifiers)) {
+      return derivedKey.key;
+    }
+    
+    Set<Annotation> qualifiers = requiredQualifiers;
+    if (qualifiers.isEmpty() && bindingAnnotation != null) {
+      // Guice's @BindingAnnotation is the same as @Qualifier
+      qualifiers = Collections.singleton(bindingAnnotation);
+    }
+    
+    Key<?> key = BindingUtils.newKey(type, qualifiers);
+    if (key != null) {
+      this.derivedKey = new DerivedKey(type, requiredQualifiers, key);
+    }
+    
+    return key;
+  }
+  
+  private static class DerivedKey {
+    
+    private final Type type;
+    
+    private final Set<Annotation> requiredQualifiers;
+    
+    private final Key<?> key;
+    
+    public DerivedKey(Type type, Set<Annotation> requiredQualifiers, Key<?> key) {
+      this.type = type;
+      this.requiredQualifiers = requiredQualifiers;
+      this.key = key;
+    }
+    
+    public boolean matches(Type type, Set<Annotation> requiredQualifiers) {
+      if (this.type != type && !this.type.equals(type)) {
+        return false;
+      }
+      
+      if (this.requiredQualifiers == requiredQualifiers) {
+        return true;
+      }
+      
+      if (this.requiredQualifiers.isEmpty()) {
+        return requiredQualifiers.isEmpty();
+      }
+      
+      return this.requiredQualifiers.equals(requiredQualifiers);
+    }
+  }
+}
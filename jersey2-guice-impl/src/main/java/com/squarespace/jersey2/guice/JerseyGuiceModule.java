@@ -19,6 +19,7 @@ package com.squarespace.jersey2.guice;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
@@ -27,6 +28,8 @@ import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Providers;
 
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 
 import com.google.inject.Injector;
 import com.google.inject.servlet.RequestScoped;
@@ -35,19 +38,51 @@ public class JerseyGuiceModule extends JerseyModule {
 
   private final ServiceLocator locator;
   
+  private final LinkOptions options;
+  
   public JerseyGuiceModule(String name) {
-    this(JerseyGuiceUtils.newServiceLocator(name));
+    this(name, LinkOptions.DEFAULT);
+  }
+  
+  public JerseyGuiceModule(String name, LinkOptions options) {
+    this(JerseyGuiceUtils.newServiceLocator(name), options);
+  }
+  
+  /**
+   * @see #JerseyGuiceModule(String, ServiceLocator, LinkOptions)
+   */
+  public JerseyGuiceModule(String name, ServiceLocator parent) {
+    this(name, parent, LinkOptions.DEFAULT);
+  }
+  
+  /**
+   * Creates a {@link JerseyGuiceModule} whose {@link ServiceLocator} is a child of the given 
+   * shared {@link ServiceLocator}. The module must be installed in a child of the shared
+   * {@link ServiceLocator}'s {@link Injector}.
+   * 
+   * @see JerseyGuiceUtils#newSharedServiceLocator(String, Injector, LinkOptions)
+   */
+  public JerseyGuiceModule(String name, ServiceLocator parent, LinkOptions options) {
+    this(JerseyGuiceUtils.newServiceLocator(name, parent), options);
   }
   
   public JerseyGuiceModule(ServiceLocator locator) {
+    this(locator, LinkOptions.DEFAULT);
+  }
+  
+  /**
+   * @see LinkOptions
+   */
+  public JerseyGuiceModule(ServiceLocator locator, LinkOptions options) {
     this.locator = locator;
+    this.options = options;
   }
 
   @Override
   protected void configure() {
     
     Provider<Injector> injector = getProvider(Injector.class);
-    bind(ServiceLocator.class).toProvider(new ServiceLocatorProvider(injector, locator))
+    bind(ServiceLocator.class).toProvider(new ServiceLocatorProvider(injector, locator, options))
       .in(Singleton.class);
     
     Provider<ServiceLocator> provider = getProvider(ServiceLocator.class);
@@ -99,16 +134,24 @@ public class JerseyGuiceModule extends JerseyModule {
     
     private final ServiceLocator locator;
     
+    private final LinkOptions options;
+    
     @Inject
-    public ServiceLocatorProvider(Provider<Injector> provider, ServiceLocator locator) {
+    public ServiceLocatorProvider(Provider<Injector> provider, ServiceLocator locator, LinkOptions options) {
       this.provider = provider;
       this.locator = locator;
+      this.options = options;
     }
     
     @Override
     public ServiceLocator get() {
       Injector injector = provider.get();
-      JerseyGuiceUtils.link(locator, injector);
+      JerseyGuiceUtils.link(locator, injector, options);
+      
+      // Puts Jersey's request objects into Guice's request scope.
+      ServiceLocatorUtilities.addOneDescriptor(locator, 
+          BuilderHelper.createConstantDescriptor(new GuiceRequestScopeFilter(), 
+              null, ContainerRequestFilter.class));
       
       return locator;
     }
@@ -16,41 +16,33 @@
 
 package com.squarespace.jersey2.guice;
 
-import static com.squarespace.jersey2.guice.BindingUtils.newGuiceInjectionResolverDescriptor;
-import static com.squarespace.jersey2.guice.BindingUtils.newThreeThirtyInjectionResolverDescriptor;
-
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.inject.Singleton;
-
-import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DescriptorVisibility;
 import org.glassfish.hk2.api.DynamicConfiguration;
 import org.glassfish.hk2.api.DynamicConfigurationService;
-import org.glassfish.hk2.api.InjectionResolver;
+import org.glassfish.hk2.api.JustInTimeInjectionResolver;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.ServiceLocatorFactory;
 import org.glassfish.hk2.extension.ServiceLocatorGenerator;
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
 import org.glassfish.hk2.utilities.Binder;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.jersey.message.internal.MessagingBinders;
-import org.jvnet.hk2.external.generator.ServiceLocatorGeneratorImpl;
-import org.jvnet.hk2.internal.DefaultClassAnalyzer;
-import org.jvnet.hk2.internal.DynamicConfigurationImpl;
-import org.jvnet.hk2.internal.DynamicConfigurationServiceImpl;
-import org.jvnet.hk2.internal.InstantiationServiceImpl;
 import org.jvnet.hk2.internal.ServiceLocatorImpl;
-import org.jvnet.hk2.internal.ServiceLocatorRuntimeImpl;
-import org.jvnet.hk2.internal.Utilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +50,7 @@ import com.google.inject.Binding;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.Module;
 import com.google.inject.spi.ElementSource;
 
 /**
@@ -76,6 +69,8 @@ public class JerseyGuiceUtils {
   
   private static final AtomicInteger NTH = new AtomicInteger();
   
+  private static final GuiceServiceLocatorPrototype PROTOTYPE = new GuiceServiceLocatorPrototype();
+  
   private static boolean SPI_CHECKED = false;
   
   private static boolean SPI_PRESENT = false;
@@ -107,11 +102,57 @@ public class JerseyGuiceUtils {
   }
   
   /**
+   * Enables a pool of pre-built {@link ServiceLocator}s. The pool is being filled by a background
+   * thread and {@link ServiceLocator}s that are requested by name but that are neither installed 
+   * nor provided by the {@link ServiceLocatorGenerator} delegate are being taken from the pool 
+   * instead of being built on the caller's thread. Idle {@link ServiceLocator}s are being evicted 
+   * after the given max age.
    * 
+   * NOTE: The pooled {@link ServiceLocator}s are created by {@link #newServiceLocator(String, ServiceLocator)}
+   * and they're only being used for {@link ServiceLocator}s without a parent. Jersey's internal 
+   * {@link ServiceLocator}s become {@link GuiceServiceLocator}s as a result. They have a lookup
+   * cache and resolve Guice's {@link com.google.inject.Inject} annotation.
+   * 
+   * @see #disableServiceLocatorPool()
+   * @see #getServiceLocatorPoolStats()
+   */
+  public static void enableServiceLocatorPool(int size, long maxAge, TimeUnit unit) {
+    GuiceServiceLocatorGenerator generator = getOrCreateGuiceServiceLocatorGenerator();
+    generator.pool(new GuiceServiceLocatorPool(size, maxAge, unit));
+  }
+  
+  /**
+   * Disables the pool of pre-built {@link ServiceLocator}s and shuts down the idle ones.
+   * 
+   * @see #enableServiceLocatorPool(int, long, TimeUnit)
+   */
+  public static void disableServiceLocatorPool() {
+    GuiceServiceLocatorGenerator generator = getOrCreateGuiceServiceLocatorGenerator();
+    generator.pool(null);
+  }
+  
+  /**
+   * Returns the {@link CacheStats} of the pool of pre-built {@link ServiceLocator}s
+   * or {@code null} if the pool is not enabled.
+   * 
+   * @see #enableServiceLocatorPool(int, long, TimeUnit)
+   */
+  public static CacheStats getServiceLocatorPoolStats() {
+    GuiceServiceLocatorGenerator generator = getOrCreateGuiceServiceLocatorGenerator();
+    GuiceServiceLocatorPool pool = generator.pool();
+    return pool != null ? pool.getStats() : null;
+  }
+  
+  /**
+   * Resets all global state.
    */
   public static void reset() {
     GuiceServiceLocatorGenerator generator = getOrCreateGuiceServiceLocatorGenerator();
     generator.reset();
+    
+    ModuleClassifier.clear();
+    GuiceQualifier.clear();
+    BindingUtils.clear();
   }
   
   private static synchronized GuiceServiceLocatorGenerator getOrCreateGuiceServiceLocatorGenerator() {
@@ -230,7 +271,7 @@ public class JerseyGuiceUtils {
   /**
    * Creates and returns a {@link ServiceLocator}.
    * 
-   * NOTE: This code should be very similar to HK2's own {@link ServiceLocatorGeneratorImpl}.
+   * @see GuiceServiceLocatorPrototype
    */
   public static ServiceLocator newServiceLocator(String name, ServiceLocator parent) {
     if (parent != null && !(parent instanceof ServiceLocatorImpl)) {
@@ -245,58 +286,231 @@ public class JerseyGuiceUtils {
       name += NTH.incrementAndGet();
     }
     
-    GuiceServiceLocator locator = new GuiceServiceLocator(name, parent);
-    
-    DynamicConfigurationImpl config = new DynamicConfigurationImpl(locator);
-    
-    config.bind(Utilities.getLocatorDescriptor(locator));
-    
-    ActiveDescriptor<InjectionResolver<javax.inject.Inject>> threeThirtyResolver 
-      = newThreeThirtyInjectionResolverDescriptor(locator);
+    return PROTOTYPE.newServiceLocator(name, parent);
+  }
+  
+  /**
+   * @see #newSharedServiceLocator(String, Injector, LinkOptions)
+   */
+  public static ServiceLocator newSharedServiceLocator(String name, Injector injector) {
+    return newSharedServiceLocator(name, injector, LinkOptions.DEFAULT);
+  }
+  
+  /**
+   * Creates a {@link ServiceLocator} that is linked to the given {@link Injector} and that is
+   * meant to be the shared parent of many Jersey applications' {@link ServiceLocator}s in the 
+   * same JVM. The applications' {@link Injector}s must be children of the given {@link Injector}.
+   * Their {@link ServiceLocator}s inherit the common bindings, {@link GuiceScopeContext} and the 
+   * {@link javax.ws.rs.ext.RuntimeDelegate.HeaderDelegate} providers from the shared 
+   * {@link ServiceLocator} and export only the application's own bindings.
+   * 
+   * NOTE: The injection resolvers, the {@link DynamicConfigurationService}, the class 
+   * analyzer and the {@link org.glassfish.hk2.api.InstantiationService} are not being
+   * shared. HK2 binds them to the {@link ServiceLocator} that owns them (and some are 
+   * {@link DescriptorVisibility#LOCAL}) and every application's {@link ServiceLocator}
+   * has its own copies of them. The same goes for the {@link GuiceRequestScopeContext}
+   * which must see the application's own Jersey {@code RequestScope}.
+   * 
+   * <pre>
+   * ServiceLocator shared = JerseyGuiceUtils.newSharedServiceLocator("shared", baseInjector);
+   * 
+   * Injector injector = baseInjector.createChildInjector(
+   *     new JerseyGuiceModule("app", shared), new ServletModule(), ...);
+   * </pre>
+   * 
+   * @see JerseyGuiceModule#JerseyGuiceModule(String, ServiceLocator, LinkOptions)
+   */
+  public static ServiceLocator newSharedServiceLocator(String name, Injector injector, LinkOptions options) {
+    return link(newServiceLocator(name), injector, options);
+  }
+  
+  /**
+   * This method links the {@link Injector} to the {@link ServiceLocator}.
+   * 
+   * @see #link(ServiceLocator, Injector, LinkMode)
+   */
+  public static ServiceLocator link(ServiceLocator locator, Injector injector) {
+    return link(locator, injector, LinkOptions.DEFAULT);
+  }
+  
+  /**
+   * This method links the {@link Injector} to the {@link ServiceLocator} using 
+   * the given {@link LinkMode}.
+   * 
+   * @see LinkMode
+   */
+  public static ServiceLocator link(ServiceLocator locator, Injector injector, LinkMode mode) {
+    return link(locator, injector, LinkOptions.DEFAULT.withMode(mode));
+  }
+  
+  /**
+   * This method links the {@link Injector} to the {@link ServiceLocator} using 
+   * the given {@link LinkOptions}.
+   * 
+   * If the {@link ServiceLocator}'s parent is linked to the {@link Injector}'s parent
+   * then only the {@link Injector}'s own bindings are being linked. Everything else
+   * is being inherited from the parent {@link ServiceLocator}.
+   * 
+   * <pre>
+   * ServiceLocator parent = JerseyGuiceUtils.link(
+   *     JerseyGuiceUtils.newServiceLocator("parent"), parentInjector);
+   * 
+   * ServiceLocator child = JerseyGuiceUtils.link(
+   *     JerseyGuiceUtils.newServiceLocator("child", parent), childInjector);
+   * </pre>
+   * 
+   * @see LinkOptions
+   */
+  public static ServiceLocator link(ServiceLocator locator, Injector injector, LinkOptions options) {
+    
+    boolean inherit = isLinked(locator.getParent(), injector.getParent());
+    
+    Map<Key<?>, Binding<?>> bindings = filterBindings(inherit 
+        ? new HashMap<Key<?>, Binding<?>>(injector.getBindings())
+        : gatherBindings(injector), options.getExportFilter());
+    
+    LinkMode mode = options.getMode();
+    
+    GuiceBindingIndex index = null;
+    
+    Iterable<? extends Binder> binders = null;
+    switch (mode) {
+      case SEQUENTIAL:
+        binders = toBinders(bindings);
+        break;
+      case PARALLEL:
+        binders = GuiceBinderTask.toBinders(bindings);
+        break;
+      case LAZY:
+        List<GuiceBinder<?>> eager = new ArrayList<>();
+        index = GuiceBindingIndex.split(toBinders(bindings), eager);
+        binders = eager;
+        break;
+      default:
+        throw new IllegalArgumentException("mode=" + mode);
+    }
     
-    config.addActiveDescriptor(threeThirtyResolver);
-    config.addActiveDescriptor(newGuiceInjectionResolverDescriptor(
-        locator, threeThirtyResolver));
+    return link(locator, injector, options, binders, index, inherit);
+  }
+  
+  /**
+   * Creates a child {@link Injector} of the given {@link Injector} and links it to a new
+   * child {@link ServiceLocator} of the given {@link ServiceLocator}. The {@link ServiceLocator} 
+   * must be linked to the {@link Injector} already. Only the child's own bindings are being 
+   * exported and the child {@link ServiceLocator} inherits everything else. The child is being
+   * linked with the same {@link LinkOptions} as the given {@link ServiceLocator}.
+   * 
+   * The child {@link ServiceLocator} must be shut down when the child {@link Injector} is
+   * no longer needed.
+   * 
+   * <pre>
+   * LinkedInjector child = JerseyGuiceUtils.newChildInjector(injector, locator, modules);
+   * try {
+   *   ...
+   * } finally {
+   *   child.shutdown();
+   * }
+   * </pre>
+   * 
+   * @see Injector#createChildInjector(Module...)
+   * @see #link(ServiceLocator, Injector, LinkOptions)
+   */
+  public static LinkedInjector newChildInjector(Injector injector, ServiceLocator locator, Module... modules) {
+    GuiceJustInTimeResolver resolver = getJustInTimeResolver(locator);
+    if (resolver == null || resolver.getInjector() != injector) {
+      throw new IllegalArgumentException("The ServiceLocator is not linked to the Injector: " + locator);
+    }
     
-    config.bind(BuilderHelper.link(DynamicConfigurationServiceImpl.class, false).
-            to(DynamicConfigurationService.class).
-            in(Singleton.class.getName()).
-            localOnly().
-            build());
+    Injector child = injector.createChildInjector(modules);
+    ServiceLocator childLocator = link(newServiceLocator(null, locator), child, resolver.getOptions());
     
-    config.bind(BuilderHelper.createConstantDescriptor(
-            new DefaultClassAnalyzer(locator)));
+    return new LinkedInjector(child, childLocator);
+  }
+  
+  /**
+   * Returns the {@link CacheStats} of the given {@link ServiceLocator}'s cache
+   * of failed just-in-time {@link Key}s or {@code null} if the {@link ServiceLocator}
+   * hasn't been linked to an {@link Injector}.
+   * 
+   * @see #link(ServiceLocator, Injector)
+   */
+  public static CacheStats getJustInTimeFailureCacheStats(ServiceLocator locator) {
+    GuiceJustInTimeResolver resolver = getJustInTimeResolver(locator);
+    return resolver != null ? resolver.getFailureCacheStats() : null;
+  }
+  
+  /**
+   * Returns {@code true} if the given {@link ServiceLocator} is linked to the given {@link Injector}.
+   */
+  static boolean isLinked(ServiceLocator locator, Injector injector) {
+    if (locator == null || injector == null) {
+      return false;
+    }
     
-    config.bind(BuilderHelper.createDescriptorFromClass(ServiceLocatorRuntimeImpl.class));
+    GuiceJustInTimeResolver resolver = getJustInTimeResolver(locator);
+    return resolver != null && resolver.getInjector() == injector;
+  }
+  
+  /**
+   * Returns the {@link ServiceLocator}'s own {@link GuiceJustInTimeResolver} or {@code null}.
+   */
+  private static GuiceJustInTimeResolver getJustInTimeResolver(ServiceLocator locator) {
+    for (JustInTimeInjectionResolver resolver : locator.getAllServices(JustInTimeInjectionResolver.class)) {
+      if (resolver instanceof GuiceJustInTimeResolver) {
+        return (GuiceJustInTimeResolver)resolver;
+      }
+    }
     
-    config.bind(BuilderHelper.createConstantDescriptor(
-        new InstantiationServiceImpl()));
+    return null;
+  }
+  
+  /**
+   * Returns the {@link CacheStats} of the given {@link ServiceLocator}'s lookup
+   * cache or {@code null} if the {@link ServiceLocator} wasn't created by 
+   * {@link #newServiceLocator(String, ServiceLocator)}.
+   */
+  public static CacheStats getLookupCacheStats(ServiceLocator locator) {
+    if (locator instanceof GuiceServiceLocator) {
+      return ((GuiceServiceLocator)locator).getLookupCacheStats();
+    }
     
-    config.commit();
-    return locator;
+    return null;
   }
   
   /**
-   * This method links the {@link Injector} to the {@link ServiceLocator}.
+   * Removes all {@link Binding}s from the {@link Map} the {@link ExportFilter} doesn't accept.
    */
-  public static ServiceLocator link(ServiceLocator locator, Injector injector) {
+  private static Map<Key<?>, Binding<?>> filterBindings(Map<Key<?>, Binding<?>> bindings, ExportFilter filter) {
+    if (filter == ExportFilters.all()) {
+      return bindings;
+    }
     
-    Map<Key<?>, Binding<?>> bindings = gatherBindings(injector);
-    Set<Binder> binders = toBinders(bindings);
+    Iterator<Map.Entry<Key<?>, Binding<?>>> it = bindings.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Key<?>, Binding<?>> entry = it.next();
+      if (!filter.accept(entry.getKey(), entry.getValue())) {
+        it.remove();
+      }
+    }
     
-    return link(locator, injector, binders);
+    return bindings;
   }
   
   /**
-   * Gathers Guice {@link Injector} bindings over the hierarchy.
+   * Gathers Guice {@link Injector} bindings over the hierarchy. A child's 
+   * {@link Binding} takes precedence over its parent's.
    */
-  private static Map<Key<?>, Binding<?>> gatherBindings(Injector injector) {
+  static Map<Key<?>, Binding<?>> gatherBindings(Injector injector) {
       
     Map<Key<?>, Binding<?>> dst = new HashMap<Key<?>, Binding<?>>();
     
     Injector current = injector;
     while (current != null) {
-      dst.putAll(current.getBindings());
+      for (Map.Entry<Key<?>, Binding<?>> entry : current.getBindings().entrySet()) {
+        if (!dst.containsKey(entry.getKey())) {
+          dst.put(entry.getKey(), entry.getValue());
+        }
+      }
       current = current.getParent();
     }
     
@@ -305,20 +519,35 @@ public class JerseyGuiceUtils {
   
   /**
    * @see #link(ServiceLocator, Injector)
-   * @see #newChildInjector(Injector, ServiceLocator)
    */
-  private static ServiceLocator link(ServiceLocator locator, 
-      Injector injector, Iterable<? extends Binder> binders) {
+  private static ServiceLocator link(ServiceLocator locator, Injector injector, LinkOptions options, 
+      Iterable<? extends Binder> binders, GuiceBindingIndex index, boolean inherit) {
     
     DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
     DynamicConfiguration dc = dcs.createDynamicConfiguration();
     
-    GuiceJustInTimeResolver resolver = new GuiceJustInTimeResolver(locator, injector);
-    dc.bind(BuilderHelper.createConstantDescriptor(resolver));
-    
-    dc.addActiveDescriptor(GuiceScopeContext.class);
-    
-    bind(locator, dc, new MessagingBinders.HeaderDelegateProviders());
+    // The GuiceJustInTimeResolver is local to the ServiceLocator. A child ServiceLocator 
+    // must not use its parent's because the parent Injector doesn't know the child's bindings.
+    GuiceJustInTimeResolver resolver = new GuiceJustInTimeResolver(
+        locator, injector, options, index);
+    AbstractActiveDescriptor<GuiceJustInTimeResolver> resolverDescriptor 
+        = BuilderHelper.createConstantDescriptor(resolver);
+    resolverDescriptor.setDescriptorVisibility(DescriptorVisibility.LOCAL);
+    dc.bind(resolverDescriptor);
+    
+    // Jersey adds its RequestScope to the ServiceLocator it's running in. A parent's
+    // GuiceRequestScopeContext would never see it and HK2 refuses to pick one of
+    // several active Contexts. Every ServiceLocator has therefore its own.
+    AbstractActiveDescriptor<GuiceRequestScopeContext> requestScopeDescriptor 
+        = BuilderHelper.createConstantDescriptor(new GuiceRequestScopeContext(locator));
+    requestScopeDescriptor.setDescriptorVisibility(DescriptorVisibility.LOCAL);
+    dc.bind(requestScopeDescriptor);
+    
+    // The parent ServiceLocator has them already
+    if (!inherit) {
+      dc.addActiveDescriptor(GuiceScopeContext.class);
+      bind(locator, dc, new MessagingBinders.HeaderDelegateProviders());
+    }
     
     for (Binder binder : binders) {
       bind(locator, dc, binder);
@@ -332,7 +561,7 @@ public class JerseyGuiceUtils {
    * @see ServiceLocator#inject(Object)
    * @see Binder#bind(DynamicConfiguration)
    */
-  private static void bind(ServiceLocator locator, DynamicConfiguration dc, Binder binder) {
+  static void bind(ServiceLocator locator, DynamicConfiguration dc, Binder binder) {
     locator.inject(binder);
     binder.bind(dc);
   }
@@ -340,64 +569,59 @@ public class JerseyGuiceUtils {
   /**
    * Turns the given Guice {@link Binding}s into HK2 {@link Binder}s.
    */
-  @SuppressWarnings({ "unchecked", "rawtypes" })
-  private static Set<Binder> toBinders(Map<Key<?>, Binding<?>> bindings) {
-    Set<Binder> binders = new HashSet<>();
+  static Set<GuiceBinder<?>> toBinders(Map<Key<?>, Binding<?>> bindings) {
+    Set<GuiceBinder<?>> binders = new HashSet<>();
+    
+    ModuleClassifier classifier = ModuleClassifier.get(
+        Thread.currentThread().getContextClassLoader());
     
     for (Map.Entry<Key<?>, Binding<?>> entry : bindings.entrySet()) {
-      Key<?> key = entry.getKey();
-      Binding<?> binding = entry.getValue();
-      
-      Object source = binding.getSource();
-      if (!(source instanceof ElementSource)) {
-        
-        // Things like the Injector itself don't have an ElementSource.
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("Adding binding: key={}, source={}", key, source);
-        }
-        
-        binders.add(new GuiceBinder(key, binding));
-        continue;
+      GuiceBinder<?> binder = toBinder(entry.getKey(), entry.getValue(), classifier);
+      if (binder != null) {
+        binders.add(binder);
       }
+    }
+    
+    return binders;
+  }
+  
+  /**
+   * Turns the given Guice {@link Binding} into a {@link GuiceBinder} or returns 
+   * {@code null} if the {@link Binding} was declared in a {@link JerseyModule}.
+   * 
+   * NOTE: The {@link ModuleClassifier} is passed in because this method may be called
+   * from threads other than the caller's (i.e. with a different context {@link ClassLoader}).
+   * 
+   * @see GuiceBinderTask
+   * @see ModuleClassifier
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static GuiceBinder<?> toBinder(Key<?> key, Binding<?> binding, ModuleClassifier classifier) {
+    Object source = binding.getSource();
+    if (!(source instanceof ElementSource)) {
       
-      ElementSource element = (ElementSource)source;
-      List<String> names = element.getModuleClassNames();
-      String name = names.get(0);
+      // Things like the Injector itself don't have an ElementSource.
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Adding binding: key={}, source={}", key, source);
+      }
       
-      // Skip everything that is declared in a JerseyModule
-      try {
-
-        Class<?> module;
-
-        // Attempt to load the classes via the context class loader first, in order to support
-        // environments that enforce tighter constraints on class loading (such as in an OSGi container)
-        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        if(classLoader != null) {
-          module = classLoader.loadClass(name);
-        } else {
-          module = Class.forName(name);
-        }
-        if (JerseyModule.class.isAssignableFrom(module)) {
-          if (LOG.isTraceEnabled()) {
-            LOG.trace("Ignoring binding {} in {}", key, module);
-          }
-          
-          continue;
-        }
-      } catch (ClassNotFoundException err) {
-        // Some modules may not be able to be instantiated directly here as a class if we're running
-        // in a container that enforcer tighter class loader constraints (such as the
-        // org.ops4j.peaberry.osgi.OSGiModule Guice module when running in an OSGi container),
-        // so we're only logging a warning here instead of throwing a hard exception
-        if (LOG.isWarnEnabled()) {
-          LOG.warn("Unavailable to load class in order to validate module: name={}", name);
-        }
+      return new GuiceBinder(key, binding);
+    }
+    
+    ElementSource element = (ElementSource)source;
+    List<String> names = element.getModuleClassNames();
+    String name = names.get(0);
+    
+    // Skip everything that is declared in a JerseyModule
+    if (classifier.isJerseyModule(name)) {
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Ignoring binding {} in {}", key, name);
       }
       
-      binders.add(new GuiceBinder(key, binding));
+      return null;
     }
     
-    return binders;
+    return new GuiceBinder(key, binding);
   }
   
   private static void set(Field field, Object instance, Object value) throws  IllegalAccessException, NoSuchFieldException, SecurityException {
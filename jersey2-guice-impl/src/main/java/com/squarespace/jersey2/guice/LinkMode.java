@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import org.glassfish.hk2.api.ServiceLocator;
+
+import com.google.inject.Injector;
+
+/**
+ * The different ways an {@link Injector} can be linked to a {@link ServiceLocator}.
+ * 
+ * @see JerseyGuiceUtils#link(ServiceLocator, Injector, LinkMode)
+ */
+public enum LinkMode {
+  
+  /**
+   * Turns all bindings into HK2 descriptors on the calling thread.
+   */
+  SEQUENTIAL,
+  
+  /**
+   * Partitions the bindings and turns them into HK2 descriptors on a
+   * {@link java.util.concurrent.ForkJoinPool}. The descriptors are still
+   * committed in a single {@link org.glassfish.hk2.api.DynamicConfiguration}
+   * and the result is the same as {@link #SEQUENTIAL}.
+   * 
+   * NOTE: This is worth it only for very large {@link Injector}s.
+   */
+  PARALLEL,
+  
+  /**
+   * Builds an index of the bindings by their raw types and turns them into HK2 
+   * descriptors the first time HK2 asks for a raw type. Bindings that are never 
+   * injected into a Jersey component never become HK2 descriptors.
+   * 
+   * NOTE: HK2 and Jersey contracts, JAX-RS types (e.g. {@code ExceptionMapper}s) as well
+   * as JAX-RS resources and providers are exported right away because Jersey looks them up with 
+   * {@link ServiceLocator#getAllServices(java.lang.reflect.Type, java.lang.annotation.Annotation...)}
+   * which doesn't ask for missing descriptors. The same is true for other types: 
+   * {@code getAllServices()} will see them only after they've been asked for once.
+   */
+  LAZY;
+}
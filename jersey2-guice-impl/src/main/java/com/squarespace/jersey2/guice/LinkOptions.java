@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import org.glassfish.hk2.api.ServiceLocator;
+
+import com.google.inject.Injector;
+
+/**
+ * An immutable set of options that control how an {@link Injector} is linked 
+ * to a {@link ServiceLocator}.
+ * 
+ * <pre>
+ * LinkOptions options = LinkOptions.DEFAULT
+ *     .withMode(LinkMode.PARALLEL)
+ *     .withCoalesceJustInTime(true)
+ *     .withExportFilter(ExportFilters.exposed());
+ * </pre>
+ * 
+ * @see JerseyGuiceUtils#link(ServiceLocator, Injector, LinkOptions)
+ * @see JerseyGuiceModule#JerseyGuiceModule(String, LinkOptions)
+ */
+public final class LinkOptions {
+  
+  /**
+   * The default {@link LinkOptions}.
+   */
+  public static final LinkOptions DEFAULT = new LinkOptions(LinkMode.SEQUENTIAL, false, ExportFilters.all());
+  
+  private final LinkMode mode;
+  
+  private final boolean coalesceJustInTime;
+  
+  private final ExportFilter exportFilter;
+  
+  private LinkOptions(LinkMode mode, boolean coalesceJustInTime, ExportFilter exportFilter) {
+    if (mode == null) {
+      throw new NullPointerException("mode");
+    }
+    
+    if (exportFilter == null) {
+      throw new NullPointerException("exportFilter");
+    }
+    
+    this.mode = mode;
+    this.coalesceJustInTime = coalesceJustInTime;
+    this.exportFilter = exportFilter;
+  }
+  
+  /**
+   * @see LinkMode
+   */
+  public LinkMode getMode() {
+    return mode;
+  }
+  
+  /**
+   * Returns a copy of this {@link LinkOptions} with the given {@link LinkMode}.
+   */
+  public LinkOptions withMode(LinkMode mode) {
+    return new LinkOptions(mode, coalesceJustInTime, exportFilter);
+  }
+  
+  /**
+   * Returns {@code true} if the just-in-time resolver should resolve all unresolved 
+   * injection points of a class at once and commit them in a single configuration.
+   * 
+   * @see GuiceJustInTimeResolver
+   */
+  public boolean isCoalesceJustInTime() {
+    return coalesceJustInTime;
+  }
+  
+  /**
+   * Returns a copy of this {@link LinkOptions} with just-in-time coalescing enabled or disabled.
+   * 
+   * @see #isCoalesceJustInTime()
+   */
+  public LinkOptions withCoalesceJustInTime(boolean coalesceJustInTime) {
+    return new LinkOptions(mode, coalesceJustInTime, exportFilter);
+  }
+  
+  /**
+   * Returns the {@link ExportFilter} that decides which bindings are being exported to HK2.
+   * 
+   * @see ExportFilters#all()
+   */
+  public ExportFilter getExportFilter() {
+    return exportFilter;
+  }
+  
+  /**
+   * Returns a copy of this {@link LinkOptions} with the given {@link ExportFilter}.
+   * 
+   * @see ExportFilters
+   */
+  public LinkOptions withExportFilter(ExportFilter exportFilter) {
+    return new LinkOptions(mode, coalesceJustInTime, exportFilter);
+  }
+  
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[mode=" + mode 
+        + ", coalesceJustInTime=" + coalesceJustInTime 
+        + ", exportFilter=" + exportFilter + "]";
+  }
+}
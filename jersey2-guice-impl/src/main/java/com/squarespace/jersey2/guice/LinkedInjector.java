@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import org.glassfish.hk2.api.ServiceLocator;
+
+import com.google.inject.Injector;
+
+/**
+ * An {@link Injector} and the {@link ServiceLocator} it's linked to.
+ * 
+ * @see JerseyGuiceUtils#newChildInjector(Injector, ServiceLocator, com.google.inject.Module...)
+ */
+public final class LinkedInjector {
+  
+  private final Injector injector;
+  
+  private final ServiceLocator locator;
+  
+  LinkedInjector(Injector injector, ServiceLocator locator) {
+    this.injector = injector;
+    this.locator = locator;
+  }
+  
+  /**
+   * Returns the {@link Injector}.
+   */
+  public Injector getInjector() {
+    return injector;
+  }
+  
+  /**
+   * Returns the {@link ServiceLocator} the {@link Injector} is linked to.
+   */
+  public ServiceLocator getServiceLocator() {
+    return locator;
+  }
+  
+  /**
+   * Shuts down the {@link ServiceLocator} and removes it from its parent. 
+   * The {@link Injector}'s bindings are no longer visible to HK2 afterwards.
+   */
+  public void shutdown() {
+    locator.shutdown();
+  }
+  
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[injector=" + injector + ", locator=" + locator + "]";
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Module;
+
+/**
+ * Remembers which {@link Module} classes are {@link JerseyModule}s. There are usually
+ * many more bindings than there are modules and loading the same class over and 
+ * over again is wasteful.
+ * 
+ * The results (including negative results) are memoized per {@link ClassLoader} and
+ * are shared across all {@link JerseyGuiceUtils#link(org.glassfish.hk2.api.ServiceLocator, 
+ * com.google.inject.Injector)} calls. The {@link ClassLoader}s are weakly referenced
+ * and the cached values are just {@link String}s and {@link Enum}s. In other words,
+ * this class doesn't pin any {@link ClassLoader}s.
+ */
+class ModuleClassifier {
+  
+  private static final Logger LOG = LoggerFactory.getLogger(ModuleClassifier.class);
+  
+  /**
+   * The {@link ModuleClassifier} for {@link Class#forName(String)}.
+   */
+  private static final ModuleClassifier SYSTEM = new ModuleClassifier(null);
+  
+  private static final Map<ClassLoader, ModuleClassifier> CLASSIFIERS = new WeakHashMap<>();
+  
+  /**
+   * Returns the {@link ModuleClassifier} for the given {@link ClassLoader}.
+   */
+  public static ModuleClassifier get(ClassLoader classLoader) {
+    if (classLoader == null) {
+      return SYSTEM;
+    }
+    
+    synchronized (CLASSIFIERS) {
+      ModuleClassifier classifier = CLASSIFIERS.get(classLoader);
+      if (classifier == null) {
+        classifier = new ModuleClassifier(classLoader);
+        CLASSIFIERS.put(classLoader, classifier);
+      }
+      return classifier;
+    }
+  }
+  
+  /**
+   * Clears all cached classifications.
+   */
+  public static void clear() {
+    SYSTEM.classifications.clear();
+    
+    synchronized (CLASSIFIERS) {
+      CLASSIFIERS.clear();
+    }
+  }
+  
+  private static enum Classification {
+    JERSEY_MODULE,
+    OTHER_MODULE,
+    NOT_FOUND;
+  }
+  
+  private final ConcurrentMap<String, Classification> classifications = new ConcurrentHashMap<>();
+  
+  /**
+   * NOTE: A strong reference from the value side of the {@link WeakHashMap} 
+   * would keep the {@link ClassLoader} alive.
+   */
+  private final WeakReference<ClassLoader> classLoaderRef;
+  
+  private ModuleClassifier(ClassLoader classLoader) {
+    this.classLoaderRef = (classLoader != null) ? new WeakReference<>(classLoader) : null;
+  }
+  
+  /**
+   * Returns {@code true} if the given class name is a {@link JerseyModule}.
+   */
+  public boolean isJerseyModule(String name) {
+    Classification classification = classifications.get(name);
+    if (classification == null) {
+      classification = classify(name);
+      
+      Classification existing = classifications.putIfAbsent(name, classification);
+      if (existing != null) {
+        classification = existing;
+        
+      } else if (classification == Classification.NOT_FOUND) {
+        // Some modules may not be able to be instantiated directly here as a class if we're running
+        // in a container that enforcer tighter class loader constraints (such as the
+        // org.ops4j.peaberry.osgi.OSGiModule Guice module when running in an OSGi container),
+        // so we're only logging a warning here instead of throwing a hard exception
+        if (LOG.isWarnEnabled()) {
+          LOG.warn("Unavailable to load class in order to validate module: name={}", name);
+        }
+      }
+    }
+    
+    return classification == Classification.JERSEY_MODULE;
+  }
+  
+  private Classification classify(String name) {
+    try {
+      
+      Class<?> module;
+      
+      // Attempt to load the classes via the context class loader first, in order to support
+      // environments that enforce tighter constraints on class loading (such as in an OSGi container)
+      ClassLoader classLoader = (classLoaderRef != null) ? classLoaderRef.get() : null;
+      if (classLoader != null) {
+        module = classLoader.loadClass(name);
+      } else {
+        module = Class.forName(name);
+      }
+      
+      if (JerseyModule.class.isAssignableFrom(module)) {
+        return Classification.JERSEY_MODULE;
+      }
+      
+      return Classification.OTHER_MODULE;
+      
+    } catch (ClassNotFoundException err) {
+      return Classification.NOT_FOUND;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import java.lang.annotation.Annotation;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.inject.Named;
+import javax.inject.Qualifier;
+
+/**
+ * An immutable {@link java.util.Set} of {@link Qualifier} {@link Annotation}s.
+ * 
+ * HK2 asks every candidate descriptor for its {@link Qualifier}s and calls
+ * {@link #containsAll(Collection)} on them. The {@link QualifierSet} is built
+ * once per descriptor and matches without allocating. It compares the 
+ * {@link Annotation}s by identity, then by {@link Annotation#annotationType()}
+ * and then by {@link Named#value()} before it falls back to 
+ * {@link Annotation#equals(Object)}, which is reflective for the JDK's and
+ * HK2's {@link Annotation} implementations.
+ * 
+ * NOTE: A {@link GuiceQualifier} matches any {@link Annotation} of the same 
+ * type. See {@link GuiceQualifier#equals(Object)}.
+ */
+class QualifierSet extends AbstractSet<Annotation> {
+  
+  private static final QualifierSet EMPTY = new QualifierSet(new Annotation[0]);
+  
+  /**
+   * Creates and returns a {@link QualifierSet}.
+   */
+  public static QualifierSet of(Collection<? extends Annotation> qualifiers) {
+    if (qualifiers.isEmpty()) {
+      return EMPTY;
+    }
+    
+    if (qualifiers instanceof QualifierSet) {
+      return (QualifierSet)qualifiers;
+    }
+    
+    return new QualifierSet(qualifiers.toArray(new Annotation[0]));
+  }
+  
+  private final Annotation[] qualifiers;
+  
+  private final Class<?>[] types;
+  
+  private final String[] names;
+  
+  private final int hashCode;
+  
+  private QualifierSet(Annotation[] qualifiers) {
+    this.qualifiers = qualifiers;
+    this.types = new Class<?>[qualifiers.length];
+    this.names = new String[qualifiers.length];
+    
+    int hashCode = 0;
+    for (int i = 0; i < qualifiers.length; i++) {
+      Annotation qualifier = qualifiers[i];
+      
+      types[i] = qualifier.annotationType();
+      
+      if (qualifier instanceof Named) {
+        names[i] = ((Named)qualifier).value();
+      }
+      
+      hashCode += qualifier.hashCode();
+    }
+    
+    this.hashCode = hashCode;
+  }
+  
+  @Override
+  public int size() {
+    return qualifiers.length;
+  }
+  
+  @Override
+  public boolean isEmpty() {
+    return qualifiers.length == 0;
+  }
+  
+  @Override
+  public Iterator<Annotation> iterator() {
+    return Arrays.asList(qualifiers).iterator();
+  }
+  
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof Annotation)) {
+      return false;
+    }
+    
+    Annotation other = (Annotation)o;
+    return contains(other, other.annotationType());
+  }
+  
+  private boolean contains(Annotation other, Class<?> otherType) {
+    for (int i = 0; i < qualifiers.length; i++) {
+      if (matches(i, other, otherType)) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /**
+   * NOTE: Iterating over the given {@link Collection} allocates an {@link Iterator}.
+   * It's being avoided for an empty {@link QualifierSet} (i.e. all unqualified candidates),
+   * another {@link QualifierSet} and single-element (or any {@link RandomAccess}) {@link List}s.
+   */
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    if (c.isEmpty()) {
+      return true;
+    }
+    
+    if (qualifiers.length == 0) {
+      return false;
+    }
+    
+    if (c instanceof QualifierSet) {
+      QualifierSet other = (QualifierSet)c;
+      for (int i = 0; i < other.qualifiers.length; i++) {
+        if (!contains(other.qualifiers[i], other.types[i])) {
+          return false;
+        }
+      }
+      
+      return true;
+    }
+    
+    if (c instanceof List<?> && c instanceof RandomAccess) {
+      List<?> list = (List<?>)c;
+      for (int i = 0; i < list.size(); i++) {
+        if (!contains(list.get(i))) {
+          return false;
+        }
+      }
+      
+      return true;
+    }
+    
+    for (Object o : c) {
+      if (!contains(o)) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  private boolean matches(int index, Annotation other, Class<?> otherType) {
+    Annotation qualifier = qualifiers[index];
+    if (qualifier == other) {
+      return true;
+    }
+    
+    if (types[index] != otherType) {
+      return false;
+    }
+    
+    if (qualifier instanceof GuiceQualifier<?>) {
+      return true;
+    }
+    
+    String name = names[index];
+    if (name != null) {
+      return name.equals(((Named)other).value());
+    }
+    
+    return qualifier.equals(other);
+  }
+  
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Injectee;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.InjecteeImpl;
+import org.glassfish.hk2.utilities.NamedImpl;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.jvnet.hk2.annotations.Contract;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.google.inject.servlet.ServletScopes;
+
+/**
+ * Puts an upper bound on the bytes that are being allocated per injection on the hot path
+ * (i.e. {@link GuiceThreeThirtyResolver} and {@link GuiceBindingDescriptor}) once everything
+ * has been warmed up. 
+ * 
+ * Most of the bytes are being allocated by HK2's {@link ServiceLocator#getInjecteeDescriptor(Injectee)}
+ * and the budgets for a full resolution leave some headroom for it. Our own helpers must not allocate 
+ * at all. A per-injection copy of the annotations (e.g. {@link java.lang.reflect.Constructor#getParameterAnnotations()}),
+ * of the qualifiers or a new {@link Key} will exceed their budget of zero bytes.
+ * 
+ * NOTE: The budgets were measured with Java 8 on 64-bit HotSpot (compressed oops).
+ * 
+ * @see com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)
+ */
+public class AllocationBudgetTest {
+  
+  private static final int WARMUPS = 20000;
+  
+  private static final int ITERATIONS = 10000;
+  
+  /**
+   * The budget (in bytes) for creating a {@link RequestScoped} instance in a new request.
+   */
+  private static final long REQUEST_SCOPED_BUDGET = 3072L;
+  
+  /**
+   * The budget (in bytes) for resolving a {@link Named} binding.
+   */
+  private static final long NAMED_BUDGET = 2048L;
+  
+  /**
+   * The budget (in bytes) for a qualified {@link ServiceLocator#getService(Class, Annotation...)}.
+   */
+  private static final long QUALIFIED_BUDGET = 512L;
+  
+  /**
+   * The budget (in bytes) for an unsatisfied {@link Nullable} constructor parameter.
+   */
+  private static final long NULLABLE_BUDGET = 2048L;
+  
+  /**
+   * The budget (in bytes) for our own helpers on the hot path.
+   */
+  private static final long HELPER_BUDGET = 0L;
+  
+  private static final String NAME = "AllocationBudgetTest.NAME";
+  
+  private static final String VALUE = "Hello, World!";
+  
+  private ServiceLocator locator;
+  
+  private RequestScope requestScope;
+  
+  private Injector injector;
+  
+  private GuiceThreeThirtyResolver resolver;
+  
+  private com.sun.management.ThreadMXBean threadMXBean;
+  
+  @BeforeClass
+  public void setUp() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      throw new SkipException("Thread allocated memory is not supported: " + bean);
+    }
+    
+    threadMXBean = (com.sun.management.ThreadMXBean)bean;
+    if (!threadMXBean.isThreadAllocatedMemorySupported() 
+        || !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+      throw new SkipException("Thread allocated memory is not supported");
+    }
+    
+    locator = JerseyGuiceUtils.newServiceLocator();
+    
+    // Guice's @RequestScoped bindings use Jersey's request scope if there is one
+    ServiceLocatorUtilities.bind(locator, new RequestScope.Binder());
+    requestScope = locator.getService(RequestScope.class);
+    
+    injector = Guice.createInjector(
+        new JerseyGuiceModule(locator), 
+        new ServletModule(), 
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(Dependency.class);
+            bind(String.class).annotatedWith(Names.named(NAME)).toInstance(VALUE);
+          }
+        });
+    
+    assertSame(injector.getInstance(ServiceLocator.class), locator);
+    
+    resolver = new GuiceThreeThirtyResolver(locator);
+  }
+  
+  @AfterClass
+  public void tearDown() {
+    if (locator != null) {
+      locator.shutdown();
+    }
+  }
+  
+  @Test
+  public void requestScoped() throws Exception {
+    final Injectee injectee = newInjectee(Dependency.class, 
+        Target.class.getDeclaredField("dependency"), -1);
+    
+    ActiveDescriptor<?> descriptor = locator.getInjecteeDescriptor(injectee);
+    assertSame(descriptor.getScopeAnnotation(), GuiceRequestScope.class);
+    
+    Callable<Object> resolve = new Callable<Object>() {
+      @Override
+      public Object call() {
+        return resolver.resolve(injectee, null);
+      }
+    };
+    
+    Callable<Object> empty = new Callable<Object>() {
+      @Override
+      public Object call() {
+        return null;
+      }
+    };
+    
+    assertTrue(inRequestScope(resolve).call() instanceof Dependency);
+    
+    // Entering and leaving Jersey's and Guice's request scopes allocates 
+    // as well. It's not what we're interested in and it's being subtracted.
+    long bytes = bytesPerOp(inRequestScope(resolve)) - bytesPerOp(inRequestScope(empty));
+    assertWithinBudget("requestScoped", bytes, REQUEST_SCOPED_BUDGET);
+  }
+  
+  @Test
+  public void named() throws Exception {
+    final Injectee injectee = newInjectee(String.class, 
+        Target.class.getDeclaredField("value"), -1, new NamedImpl(NAME));
+    
+    assertSame(resolver.resolve(injectee, null), VALUE);
+    
+    long bytes = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return resolver.resolve(injectee, null);
+      }
+    });
+    
+    assertWithinBudget("named", bytes, NAMED_BUDGET);
+  }
+  
+  @Test
+  public void qualified() throws Exception {
+    final Annotation named = new NamedImpl(NAME);
+    assertSame(locator.getService(String.class, named), VALUE);
+    
+    Callable<Object> lookup = new Callable<Object>() {
+      @Override
+      public Object call() {
+        return locator.getService(String.class, named);
+      }
+    };
+    
+    // HK2 matches every candidate's qualifiers with containsAll(). The unqualified
+    // candidates are being matched against HK2's own Set of required qualifiers.
+    ActiveDescriptor<?> descriptor = locator.getBestDescriptor(
+        BuilderHelper.createContractFilter(String.class.getName()));
+    final Set<Annotation> qualifiers = descriptor.getQualifierAnnotations();
+    assertTrue(qualifiers instanceof QualifierSet);
+    
+    final Set<Annotation> unqualified = locator.getBestDescriptor(
+        BuilderHelper.createContractFilter(Dependency.class.getName())).getQualifierAnnotations();
+    assertTrue(unqualified.isEmpty());
+    
+    final Set<Annotation> required = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(named)));
+    final Set<Annotation> qualifierSet = QualifierSet.of(required);
+    final List<Annotation> list = Collections.singletonList(named);
+    
+    assertTrue(qualifiers.containsAll(qualifierSet));
+    assertTrue(qualifiers.containsAll(list));
+    assertFalse(unqualified.containsAll(required));
+    
+    long containsQualifierSet = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return qualifiers.containsAll(qualifierSet);
+      }
+    });
+    
+    long containsList = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return qualifiers.containsAll(list);
+      }
+    });
+    
+    long unqualifiedContains = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return unqualified.containsAll(required);
+      }
+    });
+    
+    assertWithinBudget("qualified", bytesPerOp(lookup), QUALIFIED_BUDGET);
+    assertWithinBudget("containsAll(QualifierSet)", containsQualifierSet, HELPER_BUDGET);
+    assertWithinBudget("containsAll(List)", containsList, HELPER_BUDGET);
+    assertWithinBudget("unqualified.containsAll(Set)", unqualifiedContains, HELPER_BUDGET);
+  }
+  
+  @Test
+  public void nullable() throws Exception {
+    final Injectee injectee = newInjectee(Unbound.class, 
+        Target.class.getDeclaredConstructor(Unbound.class), 0);
+    
+    assertNull(resolver.resolve(injectee, null));
+    
+    long bytes = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return resolver.resolve(injectee, null);
+      }
+    });
+    
+    assertWithinBudget("nullable", bytes, NULLABLE_BUDGET);
+  }
+  
+  @Test
+  public void helpers() throws Exception {
+    final Injectee nullable = newInjectee(Unbound.class, 
+        Target.class.getDeclaredConstructor(Unbound.class), 0);
+    
+    Key<String> key = Key.get(String.class, Names.named(NAME));
+    final GuiceBindingDescriptor<String> descriptor = new GuiceBindingDescriptor<>(String.class, String.class, 
+        Collections.<Annotation>singleton(Names.named(NAME)), injector.getBinding(key));
+    
+    long isNullable = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return BindingUtils.isNullable(nullable);
+      }
+    });
+    
+    long toKey = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return BindingUtils.toKey(nullable);
+      }
+    });
+    
+    long qualifiers = bytesPerOp(new Callable<Object>() {
+      @Override
+      public Object call() {
+        return descriptor.getQualifierAnnotations();
+      }
+    });
+    
+    assertWithinBudget("isNullable", isNullable, HELPER_BUDGET);
+    assertWithinBudget("toKey", toKey, HELPER_BUDGET);
+    assertWithinBudget("getQualifierAnnotations", qualifiers, HELPER_BUDGET);
+  }
+  
+  /**
+   * Returns a {@link Callable} that calls the given {@link Callable} in a new 
+   * Jersey and {@link Guice} request scope.
+   */
+  private Callable<Object> inRequestScope(final Callable<Object> callable) {
+    final Map<Key<?>, Object> seed = Collections.emptyMap();
+    
+    return new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return requestScope.runInScope(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            return ServletScopes.scopeRequest(callable, seed).call();
+          }
+        });
+      }
+    };
+  }
+  
+  /**
+   * Calls the given {@link Callable} {@link #ITERATIONS} times after warming up
+   * and returns the average number of allocated bytes per call.
+   */
+  private long bytesPerOp(Callable<?> callable) throws Exception {
+    for (int i = 0; i < WARMUPS; i++) {
+      callable.call();
+    }
+    
+    long threadId = Thread.currentThread().getId();
+    
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      callable.call();
+    }
+    long after = threadMXBean.getThreadAllocatedBytes(threadId);
+    
+    return (after - before) / ITERATIONS;
+  }
+  
+  private static void assertWithinBudget(String name, long bytes, long budget) {
+    assertTrue(bytes <= budget, name + ": " + bytes 
+        + " bytes/injection exceeds the budget of " + budget + " bytes");
+  }
+  
+  private static Injectee newInjectee(Type type, AnnotatedElement parent, 
+      int position, Annotation... qualifiers) {
+    
+    InjecteeImpl injectee = new InjecteeImpl(type);
+    injectee.setParent(parent);
+    injectee.setPosition(position);
+    
+    if (qualifiers.length > 0) {
+      injectee.setRequiredQualifiers(new HashSet<>(Arrays.asList(qualifiers)));
+    }
+    
+    return injectee;
+  }
+  
+  @RequestScoped
+  static class Dependency {
+  }
+  
+  /**
+   * An HK2 {@link Contract} without any implementations.
+   */
+  @Contract
+  static interface Unbound {
+  }
+  
+  static class Target {
+    
+    @Inject
+    private Dependency dependency;
+    
+    @Inject
+    @Named(NAME)
+    private String value;
+    
+    @Inject
+    public Target(@Nullable Unbound unbound) {
+    }
+  }
+}
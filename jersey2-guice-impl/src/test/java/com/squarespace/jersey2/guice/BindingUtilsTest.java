@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+import org.testng.annotations.Test;
+
+import com.google.inject.TypeLiteral;
+
+public class BindingUtilsTest {
+  
+  @Test
+  public void contracts() {
+    assertTrue(BindingUtils.isHk2Contract(DynamicConfigurationListener.class));
+    assertFalse(BindingUtils.isJerseyContract(DynamicConfigurationListener.class));
+    
+    assertTrue(BindingUtils.isJerseyContract(ExecutorServiceProvider.class));
+    assertFalse(BindingUtils.isHk2Contract(ExecutorServiceProvider.class));
+    
+    assertFalse(BindingUtils.isHk2Contract(String.class));
+    assertFalse(BindingUtils.isJerseyContract(String.class));
+    
+    Type type = new TypeLiteral<List<DynamicConfigurationListener>>() {}.getType();
+    assertFalse(BindingUtils.isHk2Contract(type));
+  }
+  
+  @Test
+  public void rawType() {
+    assertEquals(BindingUtils.getRawType(String.class), String.class);
+    
+    Type type = new TypeLiteral<List<String>>() {}.getType();
+    assertEquals(BindingUtils.getRawType(type), List.class);
+    
+    Type array = new TypeLiteral<List<String>[]>() {}.getType();
+    assertEquals(BindingUtils.getRawType(array), List[].class);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provides;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+public class ExportFiltersTest {
+  
+  private static final Key<String> PROVIDED = Key.get(String.class, Names.named("provided"));
+  
+  private static final Key<String> OTHER = Key.get(String.class, Names.named("other"));
+  
+  private final Injector injector = Guice.createInjector(new AbstractModule() {
+    @Override
+    protected void configure() {
+      bind(Exposed.class);
+      bind(NotExposed.class);
+      bind(OTHER).toInstance("other");
+    }
+    
+    @Provides
+    @ExposeToJersey
+    @Named("provided")
+    String provided() {
+      return "provided";
+    }
+  });
+  
+  @Test
+  public void filters() {
+    assertTrue(accept(ExportFilters.all(), NotExposed.class));
+    
+    assertTrue(accept(ExportFilters.exposed(), Exposed.class));
+    assertFalse(accept(ExportFilters.exposed(), NotExposed.class));
+    assertTrue(accept(ExportFilters.exposed(), PROVIDED));
+    assertFalse(accept(ExportFilters.exposed(), OTHER));
+    
+    assertTrue(accept(ExportFilters.keys(OTHER), OTHER));
+    assertFalse(accept(ExportFilters.keys(OTHER), PROVIDED));
+    
+    assertTrue(accept(ExportFilters.packages("com.squarespace"), Exposed.class));
+    assertFalse(accept(ExportFilters.packages("com.squarespace.jersey2.guice.resource"), Exposed.class));
+    assertFalse(accept(ExportFilters.packages("java.lang"), Exposed.class));
+    assertFalse(accept(ExportFilters.not(ExportFilters.packages("java.lang")), OTHER));
+    
+    assertTrue(accept(ExportFilters.or(ExportFilters.exposed(), ExportFilters.keys(OTHER)), OTHER));
+    assertFalse(accept(ExportFilters.and(ExportFilters.exposed(), ExportFilters.keys(OTHER)), OTHER));
+  }
+  
+  @Test
+  public void link() {
+    LinkOptions options = LinkOptions.DEFAULT.withExportFilter(ExportFilters.exposed());
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, options);
+    
+    assertEquals(count(locator, Exposed.class), 1);
+    assertEquals(count(locator, NotExposed.class), 0);
+    assertEquals(count(locator, String.class), 1);
+  }
+  
+  private boolean accept(ExportFilter filter, Class<?> type) {
+    return accept(filter, Key.get(type));
+  }
+  
+  private boolean accept(ExportFilter filter, Key<?> key) {
+    Binding<?> binding = injector.getBinding(key);
+    return filter.accept(key, binding);
+  }
+  
+  private static int count(ServiceLocator locator, Class<?> type) {
+    Filter filter = BuilderHelper.createContractFilter(type.getName());
+    return locator.getDescriptors(filter).size();
+  }
+  
+  @ExposeToJersey
+  public static class Exposed {
+  }
+  
+  public static class NotExposed {
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.google.inject.servlet.ServletScopes;
+
+public class GuiceBindingDescriptorTest {
+  
+  @Test
+  public void scopes() throws Exception {
+    final CountingProvider provider = new CountingProvider();
+    
+    Injector injector = Guice.createInjector(new ServletModule(), new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MySingleton.class).toProvider(provider).in(Singleton.class);
+        bind(MyRequestScoped.class).in(RequestScoped.class);
+        bind(MyUnscoped.class);
+      }
+    });
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    assertEquals(getScope(locator, MySingleton.class), Singleton.class.getName());
+    assertEquals(getScope(locator, MyRequestScoped.class), GuiceRequestScope.class.getName());
+    assertEquals(getScope(locator, MyUnscoped.class), GuiceScope.class.getName());
+    
+    // HK2 holds on to Guice's singletons
+    MySingleton singleton = locator.getService(MySingleton.class);
+    assertSame(locator.getService(MySingleton.class), singleton);
+    assertEquals(provider.counter.get(), 1);
+    
+    assertNotSame(locator.getService(MyUnscoped.class), locator.getService(MyUnscoped.class));
+    
+    // There is no Jersey RequestScope in this ServiceLocator and it's Guice's request scope
+    MyRequestScoped first = inRequestScope(locator, MyRequestScoped.class);
+    MyRequestScoped second = inRequestScope(locator, MyRequestScoped.class);
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNotSame(first, second);
+  }
+  
+  @Test
+  public void jerseyRequestScope() throws Exception {
+    Injector injector = Guice.createInjector(new ServletModule(), new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MyRequestScoped.class).in(RequestScoped.class);
+      }
+    });
+    
+    final ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    // Jersey adds its RequestScope after the ServiceLocator has been linked
+    ServiceLocatorUtilities.bind(locator, new RequestScope.Binder());
+    final RequestScope requestScope = locator.getService(RequestScope.class);
+    
+    final ActiveDescriptor<?> descriptor = locator.getBestDescriptor(
+        BuilderHelper.createContractFilter(MyRequestScoped.class.getName()));
+    
+    // Outside of a Jersey request it's Guice's request scope
+    assertNotNull(inRequestScope(locator, MyRequestScoped.class));
+    
+    requestScope.runInScope(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        MyRequestScoped value = inRequestScope(locator, MyRequestScoped.class);
+        assertNotNull(value);
+        assertTrue(requestScope.containsKey(descriptor));
+        return null;
+      }
+    });
+  }
+  
+  @Test
+  public void noJerseyRequestScope() throws Exception {
+    Injector injector = Guice.createInjector(new ServletModule(), new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MyRequestScoped.class).in(RequestScoped.class);
+      }
+    });
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    assertNotNull(inRequestScope(locator, MyRequestScoped.class));
+    assertNotNull(inRequestScope(locator, MyRequestScoped.class));
+    
+    // Looking for Jersey's RequestScope must not make Guice create one
+    assertTrue(locator.getDescriptors(BuilderHelper.createContractFilter(
+        RequestScope.class.getName())).isEmpty());
+  }
+  
+  /**
+   * Looks up the given type twice in a new {@link Guice} request scope and returns it.
+   */
+  private static <T> T inRequestScope(final ServiceLocator locator, final Class<T> type) throws Exception {
+    Map<Key<?>, Object> seed = Collections.emptyMap();
+    return ServletScopes.scopeRequest(new Callable<T>() {
+      @Override
+      public T call() {
+        T value = locator.getService(type);
+        assertSame(locator.getService(type), value);
+        return value;
+      }
+    }, seed).call();
+  }
+  
+  @Test
+  public void cacheProvider() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MyUnscoped.class);
+      }
+    });
+    
+    Binding<MyUnscoped> binding = injector.getBinding(MyUnscoped.class);
+    GuiceBindingDescriptor<MyUnscoped> descriptor = new GuiceBindingDescriptor<>(
+        MyUnscoped.class, MyUnscoped.class, Collections.<Annotation>emptySet(), binding);
+    
+    Provider<MyUnscoped> provider = descriptor.getProvider();
+    assertSame(descriptor.getProvider(), provider);
+    assertNotSame(descriptor.create(null), descriptor.create(null));
+  }
+  
+  private static String getScope(ServiceLocator locator, Class<?> type) {
+    ActiveDescriptor<?> descriptor = locator.getBestDescriptor(
+        BuilderHelper.createContractFilter(type.getName()));
+    return descriptor.getScope();
+  }
+  
+  private static class CountingProvider implements Provider<MySingleton> {
+    
+    private final AtomicInteger counter = new AtomicInteger();
+    
+    @Override
+    public MySingleton get() {
+      counter.incrementAndGet();
+      return new MySingleton();
+    }
+  }
+  
+  public static class MySingleton {
+  }
+  
+  public static class MyRequestScoped {
+  }
+  
+  public static class MyUnscoped {
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+public class GuiceDescriptorFactoryTest {
+  
+  @Test
+  public void instanceBinding() {
+    final MyService instance = new MyServiceImpl();
+    
+    ServiceLocator locator = link(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MyService.class).toInstance(instance);
+      }
+    });
+    
+    assertEquals(getDescriptor(locator, MyService.class).getScope(), Singleton.class.getName());
+    assertSame(locator.getService(MyService.class), instance);
+  }
+  
+  @Test
+  public void linkedKeyBinding() {
+    ServiceLocator locator = link(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(MyService.class).to(MyServiceImpl.class);
+        bind(MyOtherService.class).to(MySingletonImpl.class);
+      }
+    });
+    
+    assertEquals(getDescriptor(locator, MyService.class).getScope(), GuiceScope.class.getName());
+    assertTrue(locator.getService(MyService.class) instanceof MyServiceImpl);
+    assertNotSame(locator.getService(MyService.class), locator.getService(MyService.class));
+    
+    // The alias takes the target's scope
+    assertEquals(getDescriptor(locator, MyOtherService.class).getScope(), Singleton.class.getName());
+    assertSame(locator.getService(MyOtherService.class), locator.getService(MyOtherService.class));
+  }
+  
+  private static ServiceLocator link(AbstractModule module) {
+    Injector injector = Guice.createInjector(module);
+    return JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), injector);
+  }
+  
+  private static ActiveDescriptor<?> getDescriptor(ServiceLocator locator, Class<?> type) {
+    return locator.getBestDescriptor(BuilderHelper.createContractFilter(type.getName()));
+  }
+  
+  public static interface MyService {
+  }
+  
+  public static class MyServiceImpl implements MyService {
+  }
+  
+  public static interface MyOtherService {
+  }
+  
+  @Singleton
+  public static class MySingletonImpl implements MyOtherService {
+  }
+}
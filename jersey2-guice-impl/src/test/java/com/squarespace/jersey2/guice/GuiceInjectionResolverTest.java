@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.glassfish.hk2.api.InjectionResolver;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.TypeLiteral;
+import org.testng.annotations.Test;
+
+public class GuiceInjectionResolverTest {
+  
+  @Test
+  public void delegate() {
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    
+    InjectionResolver<javax.inject.Inject> threeThirty = locator.getService(
+        new TypeLiteral<InjectionResolver<javax.inject.Inject>>() {}.getType());
+    
+    InjectionResolver<com.google.inject.Inject> guice = locator.getService(
+        new TypeLiteral<InjectionResolver<com.google.inject.Inject>>() {}.getType());
+    
+    // The Guice resolver uses the locator's three-thirty resolver
+    assertSame(((GuiceInjectionResolver)guice).getDelegate(), threeThirty);
+  }
+  
+  @Test
+  public void resolve() {
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    
+    Service service = locator.createAndInitialize(Service.class);
+    
+    assertSame(service.threeThirty, locator);
+    assertSame(service.guice, locator);
+    assertNull(service.optional);
+  }
+  
+  public static class Service {
+    
+    @javax.inject.Inject
+    private ServiceLocator threeThirty;
+    
+    @com.google.inject.Inject
+    private ServiceLocator guice;
+    
+    @com.google.inject.Inject(optional = true)
+    private Unbound optional;
+  }
+  
+  public static interface Unbound {
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.InjecteeImpl;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+
+public class GuiceJustInTimeResolverTest {
+  
+  @Test
+  public void cacheFailures() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+      }
+    });
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    Set<Throwable> errors = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+    for (int i = 0; i < 3; i++) {
+      try {
+        locator.getInjecteeDescriptor(new InjecteeImpl(Unbound.class));
+        fail("Expected a MultiException");
+      } catch (MultiException expected) {
+        for (Throwable error : expected.getErrors()) {
+          assertTrue(error instanceof ConfigurationException, error.toString());
+          errors.add(error);
+        }
+      }
+    }
+    
+    // Every caller gets its own ConfigurationException
+    assertEquals(errors.size(), 3);
+    
+    CacheStats stats = JerseyGuiceUtils.getJustInTimeFailureCacheStats(locator);
+    assertEquals(stats.missCount(), 1L);
+    assertEquals(stats.hitCount(), 2L);
+    assertEquals(stats.size(), 1L);
+    
+    // Changing the configuration must invalidate the cache
+    ServiceLocatorUtilities.addOneDescriptor(locator, 
+        BuilderHelper.createConstantDescriptor(new Object() {}));
+    
+    stats = JerseyGuiceUtils.getJustInTimeFailureCacheStats(locator);
+    assertEquals(stats.size(), 0L);
+  }
+  
+  @Test
+  public void singleFlight() throws Exception {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+      }
+    });
+    
+    final ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    int threads = 32;
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ActiveDescriptor<?>>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<ActiveDescriptor<?>>() {
+          @Override
+          public ActiveDescriptor<?> call() throws Exception {
+            barrier.await();
+            return locator.getInjecteeDescriptor(new InjecteeImpl(JustInTime.class));
+          }
+        }));
+      }
+      
+      for (Future<ActiveDescriptor<?>> future : futures) {
+        assertNotNull(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    
+    assertEquals(locator.getDescriptors(BuilderHelper.createContractFilter(JustInTime.class.getName())).size(), 1);
+  }
+  
+  @Test
+  public void coalesce() {
+    assertEquals(commitsToCreate(false), 3);
+    assertEquals(commitsToCreate(true), 1);
+  }
+  
+  @Test
+  public void coalesceSingleFlight() throws Exception {
+    for (int round = 0; round < 25; round++) {
+      Injector injector = Guice.createInjector(new AbstractModule() {
+        @Override
+        protected void configure() {
+        }
+      });
+      
+      final ServiceLocator locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), 
+          injector, LinkOptions.DEFAULT.withCoalesceJustInTime(true));
+      
+      final Class<?>[] types = { Coalesced.class, A.class, B.class, C.class };
+      
+      int threads = 16;
+      final CyclicBarrier barrier = new CyclicBarrier(threads);
+      
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          final Class<?> type = types[i % types.length];
+          futures.add(executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+              barrier.await();
+              
+              // Coalesces A, B and C while the other threads ask for them directly
+              if (type == Coalesced.class) {
+                return locator.createAndInitialize(Coalesced.class);
+              }
+              
+              return locator.getInjecteeDescriptor(new InjecteeImpl(type));
+            }
+          }));
+        }
+        
+        for (Future<?> future : futures) {
+          assertNotNull(future.get());
+        }
+      } finally {
+        executor.shutdown();
+      }
+      
+      for (Class<?> type : new Class<?>[] { A.class, B.class, C.class }) {
+        assertEquals(locator.getDescriptors(BuilderHelper.createContractFilter(type.getName())).size(), 1, 
+            type.getName());
+      }
+      
+      locator.shutdown();
+    }
+  }
+  
+  @Test
+  public void coalesceFailure() throws Exception {
+    // Fails the first lookup of B with something other than a ConfigurationException
+    final Injector delegate = Guice.createInjector();
+    final AtomicBoolean failed = new AtomicBoolean();
+    
+    Injector injector = (Injector)Proxy.newProxyInstance(Injector.class.getClassLoader(), 
+        new Class<?>[] { Injector.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("getBinding") 
+            && Key.get(B.class).equals(args[0]) 
+            && failed.compareAndSet(false, true)) {
+          throw new IllegalStateException("getBinding(" + args[0] + ")");
+        }
+        
+        try {
+          return method.invoke(delegate, args);
+        } catch (InvocationTargetException err) {
+          throw err.getCause();
+        }
+      }
+    });
+    
+    final ServiceLocator locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), 
+        injector, LinkOptions.DEFAULT.withCoalesceJustInTime(true));
+    
+    try {
+      locator.createAndInitialize(Coalesced.class);
+      fail("Expected an Exception");
+    } catch (RuntimeException expected) {
+    }
+    
+    assertTrue(failed.get());
+    
+    // The Key that was claimed by the failed coalescing must not block anyone
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ActiveDescriptor<?>> future = executor.submit(new Callable<ActiveDescriptor<?>>() {
+        @Override
+        public ActiveDescriptor<?> call() throws Exception {
+          return locator.getInjecteeDescriptor(new InjecteeImpl(B.class));
+        }
+      });
+      
+      assertNotNull(future.get(10L, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+      locator.shutdown();
+    }
+  }
+  
+  @Test
+  public void genericTypes() {
+    for (boolean coalesce : new boolean[] { false, true }) {
+      Injector injector = Guice.createInjector();
+      
+      ServiceLocator locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), 
+          injector, LinkOptions.DEFAULT.withCoalesceJustInTime(coalesce));
+      
+      // Two parameterizations of the same generic class
+      Generics generics = locator.createAndInitialize(Generics.class);
+      assertNotNull(generics.strings);
+      assertNotNull(generics.integers);
+      
+      locator.shutdown();
+    }
+  }
+  
+  /**
+   * Returns the number of configuration commits it takes to create a {@link Coalesced}.
+   */
+  private static int commitsToCreate(boolean coalesce) {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+      }
+    });
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(JerseyGuiceUtils.newServiceLocator(), 
+        injector, LinkOptions.DEFAULT.withCoalesceJustInTime(coalesce));
+    
+    CommitCounter counter = new CommitCounter();
+    ServiceLocatorUtilities.addOneConstant(locator, counter);
+    counter.count.set(0);
+    
+    Coalesced coalesced = locator.createAndInitialize(Coalesced.class);
+    assertNotNull(coalesced.a);
+    assertNotNull(coalesced.b);
+    assertNotNull(coalesced.c);
+    
+    return counter.count.get();
+  }
+  
+  @Singleton
+  public static class CommitCounter implements DynamicConfigurationListener {
+    
+    private final AtomicInteger count = new AtomicInteger();
+    
+    @Override
+    public void configurationChanged() {
+      count.incrementAndGet();
+    }
+  }
+  
+  public static class Coalesced {
+    
+    private final A a;
+    
+    @Inject
+    private B b;
+    
+    @Inject
+    private C c;
+    
+    @Inject
+    public Coalesced(A a) {
+      this.a = a;
+    }
+  }
+  
+  public static class A {
+  }
+  
+  public static class B {
+  }
+  
+  public static class C {
+  }
+  
+  public static class Gen<T> {
+  }
+  
+  public static class Generics {
+    
+    @Inject
+    private Gen<String> strings;
+    
+    @Inject
+    private Gen<Integer> integers;
+  }
+  
+  /**
+   * Guice can create a Just-In-Time binding for it.
+   */
+  public static class JustInTime {
+  }
+  
+  /**
+   * Guice can't construct interfaces that have no binding.
+   */
+  public static interface Unbound {
+  }
+}
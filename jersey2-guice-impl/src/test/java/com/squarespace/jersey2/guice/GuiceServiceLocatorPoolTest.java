@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.api.ServiceLocatorState;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.Test;
+
+public class GuiceServiceLocatorPoolTest {
+  
+  private static final long TIMEOUT = 10000L;
+  
+  @AfterTest
+  public void reset() {
+    JerseyGuiceUtils.reset();
+  }
+  
+  @Test
+  public void poll() throws InterruptedException {
+    GuiceServiceLocatorPool pool = new GuiceServiceLocatorPool(2, 1L, TimeUnit.HOURS);
+    try {
+      awaitSize(pool, 2);
+      
+      ServiceLocator locator = pool.poll("pooled");
+      assertNotNull(locator);
+      assertEquals(locator.getName(), "pooled");
+      assertTrue(locator.toString().contains("(pooled,"), locator.toString());
+      assertNotNull(locator.getService(ServiceLocator.class));
+      
+      // The pool is being refilled in the background
+      awaitSize(pool, 2);
+      
+      CacheStats stats = pool.getStats();
+      assertEquals(stats.hitCount(), 1L);
+      assertEquals(stats.size(), 2L);
+    } finally {
+      pool.shutdown();
+    }
+  }
+  
+  @Test
+  public void evict() throws InterruptedException {
+    GuiceServiceLocatorPool pool = new GuiceServiceLocatorPool(1, 10L, TimeUnit.MILLISECONDS);
+    try {
+      long deadline = System.currentTimeMillis() + TIMEOUT;
+      while (pool.getEvictionCount() == 0L && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      
+      assertTrue(pool.getEvictionCount() > 0L);
+    } finally {
+      pool.shutdown();
+    }
+    
+    assertNull(pool.poll("shutdown"));
+  }
+  
+  @Test
+  public void generator() throws InterruptedException {
+    JerseyGuiceUtils.enableServiceLocatorPool(1, 1L, TimeUnit.HOURS);
+    try {
+      long deadline = System.currentTimeMillis() + TIMEOUT;
+      while (JerseyGuiceUtils.getServiceLocatorPoolStats().size() == 0L 
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      
+      String name = "GuiceServiceLocatorPoolTest-" + System.nanoTime();
+      ServiceLocator locator = ServiceLocatorFactory.getInstance().create(name);
+      try {
+        assertEquals(locator.getName(), name);
+        assertTrue(locator instanceof GuiceServiceLocator);
+        assertEquals(JerseyGuiceUtils.getServiceLocatorPoolStats().hitCount(), 1L);
+      } finally {
+        ServiceLocatorFactory.getInstance().destroy(locator);
+      }
+      
+      assertEquals(locator.getState(), ServiceLocatorState.SHUTDOWN);
+      assertNull(ServiceLocatorFactory.getInstance().find(name));
+    } finally {
+      JerseyGuiceUtils.disableServiceLocatorPool();
+    }
+    
+    assertNull(JerseyGuiceUtils.getServiceLocatorPoolStats());
+  }
+  
+  private static void awaitSize(GuiceServiceLocatorPool pool, long size) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (pool.getStats().size() < size && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    
+    assertEquals(pool.getStats().size(), size);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.ClassAnalyzer;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.InstantiationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.testng.annotations.Test;
+
+public class GuiceServiceLocatorPrototypeTest {
+  
+  @Test
+  public void newServiceLocator() {
+    GuiceServiceLocatorPrototype prototype = new GuiceServiceLocatorPrototype();
+    
+    ServiceLocator first = prototype.newServiceLocator("first", null);
+    ServiceLocator second = prototype.newServiceLocator("second", null);
+    
+    ClassAnalyzer analyzer = first.getService(ClassAnalyzer.class, ClassAnalyzer.DEFAULT_IMPLEMENTATION_NAME);
+    assertNotNull(analyzer);
+    assertNotSame(second.getService(ClassAnalyzer.class, ClassAnalyzer.DEFAULT_IMPLEMENTATION_NAME), analyzer);
+    
+    assertNotSame(second.getService(DynamicConfigurationService.class), 
+        first.getService(DynamicConfigurationService.class));
+    
+    assertNotSame(second.getService(InstantiationService.class), 
+        first.getService(InstantiationService.class));
+    
+    // The locators can create and inject services
+    Service service = first.createAndInitialize(Service.class);
+    assertSame(service.locator, first);
+  }
+  
+  @Test
+  public void isolated() {
+    GuiceServiceLocatorPrototype prototype = new GuiceServiceLocatorPrototype();
+    
+    ServiceLocator first = prototype.newServiceLocator("first", null);
+    getDescriptor(first, DynamicConfigurationService.class).setRanking(42);
+    
+    ServiceLocator second = prototype.newServiceLocator("second", null);
+    assertEquals(getDescriptor(second, DynamicConfigurationService.class).getRanking(), 0);
+  }
+  
+  @Test
+  public void child() {
+    GuiceServiceLocatorPrototype prototype = new GuiceServiceLocatorPrototype();
+    
+    ServiceLocator parent = prototype.newServiceLocator("parent", null);
+    ServiceLocator child = prototype.newServiceLocator("child", parent);
+    
+    // Both are local to each ServiceLocator
+    assertNotNull(child.getService(InstantiationService.class));
+    assertNotSame(child.getService(InstantiationService.class), 
+        parent.getService(InstantiationService.class));
+    
+    assertNotSame(child.getService(DynamicConfigurationService.class), 
+        parent.getService(DynamicConfigurationService.class));
+  }
+  
+  private static ActiveDescriptor<?> getDescriptor(ServiceLocator locator, Class<?> type) {
+    Filter filter = BuilderHelper.createContractFilter(type.getName());
+    return locator.getDescriptors(filter).get(0);
+  }
+  
+  public static class Service {
+    
+    @javax.inject.Inject
+    private ServiceLocator locator;
+  }
+}
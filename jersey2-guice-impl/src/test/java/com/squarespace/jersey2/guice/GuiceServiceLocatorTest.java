@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import javax.inject.Provider;
+
+import org.glassfish.hk2.api.ServiceLocator;
+
+import org.glassfish.hk2.utilities.AbstractActiveDescriptor;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.NamedImpl;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.jvnet.hk2.internal.ServiceLocatorImpl;
+import org.testng.annotations.Test;
+
+import com.google.inject.util.Types;
+
+public class GuiceServiceLocatorTest {
+  
+  @Test
+  public void lookupCache() {
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    try {
+      MyService a = new MyService();
+      ServiceLocatorUtilities.addOneConstant(locator, a);
+      
+      CacheStats before = JerseyGuiceUtils.getLookupCacheStats(locator);
+      
+      assertSame(locator.getService(MyService.class), a);
+      assertSame(locator.getService(MyService.class), a);
+      
+      CacheStats stats = JerseyGuiceUtils.getLookupCacheStats(locator);
+      assertEquals(stats.hitCount() - before.hitCount(), 1L);
+      assertEquals(stats.missCount() - before.missCount(), 1L);
+      
+      // A configuration change invalidates the cache
+      MyService b = new MyService();
+      ServiceLocatorUtilities.addOneConstant(locator, b, "b");
+      
+      assertSame(locator.getService(MyService.class, new NamedImpl("b")), b);
+      assertSame(locator.getService(MyService.class, new NamedImpl("b")), b);
+      
+      ServiceLocatorUtilities.removeFilter(locator, BuilderHelper.createNameFilter("b"));
+      
+      assertNull(locator.getService(MyService.class, new NamedImpl("b")));
+      assertSame(locator.getService(MyService.class), a);
+      
+    } finally {
+      locator.shutdown();
+    }
+  }
+  
+  @Test
+  public void parentChange() {
+    ServiceLocator parent = JerseyGuiceUtils.newServiceLocator("parent");
+    ServiceLocator child = JerseyGuiceUtils.newServiceLocator("child", parent);
+    try {
+      MyService a = new MyService();
+      ServiceLocatorUtilities.addOneConstant(child, a);
+      
+      assertSame(child.getService(MyService.class), a);
+      assertSame(child.getService(MyService.class), a);
+      
+      // A higher ranked service in the parent must shadow the cached one
+      MyService b = new MyService();
+      AbstractActiveDescriptor<MyService> descriptor = BuilderHelper.createConstantDescriptor(b);
+      descriptor.setRanking(10);
+      ServiceLocatorUtilities.addOneDescriptor(parent, descriptor);
+      
+      assertSame(child.getServiceHandle(MyService.class).getService(), b);
+      assertSame(child.getService(MyService.class), b);
+      
+    } finally {
+      child.shutdown();
+      parent.shutdown();
+    }
+  }
+  
+  @Test
+  public void foreignParent() {
+    ServiceLocator parent = new ServiceLocatorImpl("foreign", null);
+    ServiceLocator child = JerseyGuiceUtils.newServiceLocator("child", parent);
+    try {
+      ServiceLocatorUtilities.addOneConstant(child, new MyService());
+      
+      CacheStats before = JerseyGuiceUtils.getLookupCacheStats(child);
+      child.getService(MyService.class);
+      child.getService(MyService.class);
+      
+      // The parent's configuration changes are not visible to us
+      CacheStats stats = JerseyGuiceUtils.getLookupCacheStats(child);
+      assertEquals(stats.hitCount(), before.hitCount());
+      assertEquals(stats.missCount(), before.missCount());
+      
+    } finally {
+      child.shutdown();
+      parent.shutdown();
+    }
+  }
+  
+  @Test
+  public void providerIsNotMiss() {
+    ServiceLocator locator = JerseyGuiceUtils.newServiceLocator();
+    try {
+      ServiceLocatorUtilities.addOneConstant(locator, new MyService());
+      
+      CacheStats before = JerseyGuiceUtils.getLookupCacheStats(locator);
+      locator.getService(Types.newParameterizedType(Provider.class, MyService.class));
+      
+      CacheStats stats = JerseyGuiceUtils.getLookupCacheStats(locator);
+      assertEquals(stats.missCount(), before.missCount());
+      
+    } finally {
+      locator.shutdown();
+    }
+  }
+  
+  public static class MyService {
+  }
+}
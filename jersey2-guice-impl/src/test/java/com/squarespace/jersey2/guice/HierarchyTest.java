@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.DynamicConfigurationListener;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorState;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Singleton;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.google.inject.servlet.ServletScopes;
+
+public class HierarchyTest {
+  
+  @Test
+  public void linkHierarchy() {
+    Injector parentInjector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Shared.class).in(Singleton.class);
+      }
+    });
+    
+    Injector childInjector = parentInjector.createChildInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Own.class);
+      }
+    });
+    
+    ServiceLocator parent = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator("parent-"), parentInjector);
+    
+    ServiceLocator child = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator("child-", parent), childInjector);
+    
+    // The child has only its own descriptors
+    assertEquals(count(child, Shared.class), 0);
+    assertEquals(count(child, Own.class), 1);
+    assertEquals(count(parent, Own.class), 0);
+    assertEquals(count(child, GuiceJustInTimeResolver.class), 1);
+    
+    assertSame(child.getService(Shared.class), parent.getService(Shared.class));
+    assertSame(child.getService(Shared.class), parentInjector.getInstance(Shared.class));
+    
+    assertEquals(child.getService(Own.class).getClass(), Own.class);
+    
+    // The child's just-in-time resolver uses the child Injector
+    assertSame(child.getService(NeedsOwn.class).own.getClass(), Own.class);
+  }
+  
+  @Test
+  public void childRequestScope() throws Exception {
+    Injector parentInjector = Guice.createInjector(new ServletModule());
+    
+    Injector childInjector = parentInjector.createChildInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(PerRequest.class).in(RequestScoped.class);
+      }
+    });
+    
+    ServiceLocator parent = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator("parent-"), parentInjector);
+    
+    final ServiceLocator child = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator("child-", parent), childInjector);
+    
+    // Outside of a Jersey request (and before Jersey has added its RequestScope)
+    ServletScopes.scopeRequest(new Callable<Void>() {
+      @Override
+      public Void call() {
+        assertNotNull(child.getService(PerRequest.class));
+        return null;
+      }
+    }, Collections.<Key<?>, Object>emptyMap()).call();
+    
+    // Jersey adds its RequestScope to the child
+    ServiceLocatorUtilities.bind(child, new RequestScope.Binder());
+    final RequestScope requestScope = child.getService(RequestScope.class);
+    
+    final ActiveDescriptor<?> descriptor = child.getBestDescriptor(
+        BuilderHelper.createContractFilter(PerRequest.class.getName()));
+    
+    ServletScopes.scopeRequest(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        return requestScope.runInScope(new Callable<Void>() {
+          @Override
+          public Void call() {
+            PerRequest value = child.getService(PerRequest.class);
+            assertSame(child.getService(PerRequest.class), value);
+            assertTrue(requestScope.containsKey(descriptor));
+            return null;
+          }
+        });
+      }
+    }, Collections.<Key<?>, Object>emptyMap()).call();
+    
+    assertEquals(count(parent, RequestScope.class), 0);
+  }
+  
+  @Test
+  public void newChildInjector() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Shared.class).in(Singleton.class);
+      }
+    });
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector);
+    
+    CommitCounter counter = new CommitCounter();
+    ServiceLocatorUtilities.addOneConstant(locator, counter);
+    counter.count.set(0);
+    
+    LinkedInjector a = JerseyGuiceUtils.newChildInjector(injector, locator, new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Service.class).to(ServiceA.class);
+      }
+    });
+    
+    LinkedInjector b = JerseyGuiceUtils.newChildInjector(injector, locator, new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Service.class).to(ServiceB.class);
+      }
+    });
+    
+    // The children don't touch the parent's configuration
+    assertEquals(counter.count.get(), 0);
+    assertEquals(count(locator, Service.class), 0);
+    
+    assertSame(a.getInjector().getParent(), injector);
+    assertSame(a.getServiceLocator().getParent(), locator);
+    
+    assertEquals(count(a.getServiceLocator(), Service.class), 1);
+    assertEquals(count(b.getServiceLocator(), Service.class), 1);
+    
+    assertEquals(a.getServiceLocator().getService(Service.class).getClass(), ServiceA.class);
+    assertEquals(b.getServiceLocator().getService(Service.class).getClass(), ServiceB.class);
+    
+    assertSame(a.getServiceLocator().getService(Shared.class), locator.getService(Shared.class));
+    
+    a.shutdown();
+    b.shutdown();
+    
+    assertEquals(a.getServiceLocator().getState(), ServiceLocatorState.SHUTDOWN);
+    assertEquals(b.getServiceLocator().getState(), ServiceLocatorState.SHUTDOWN);
+    assertEquals(locator.getState(), ServiceLocatorState.RUNNING);
+  }
+  
+  @Test
+  public void newChildInjectorOptions() {
+    Injector injector = Guice.createInjector();
+    
+    LinkOptions options = LinkOptions.DEFAULT
+        .withMode(LinkMode.LAZY)
+        .withExportFilter(ExportFilters.not(ExportFilters.keys(Key.get(Other.class))));
+    
+    ServiceLocator locator = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, options);
+    
+    LinkedInjector child = JerseyGuiceUtils.newChildInjector(injector, locator, new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Own.class);
+        bind(Other.class).toInstance(new Other());
+      }
+    });
+    
+    try {
+      ServiceLocator childLocator = child.getServiceLocator();
+      
+      // LAZY defers the export and the ExportFilter rejects Other
+      assertEquals(count(childLocator, Own.class), 0);
+      assertEquals(childLocator.getService(Own.class).getClass(), Own.class);
+      assertEquals(count(childLocator, Own.class), 1);
+      assertEquals(count(childLocator, Other.class), 0);
+      
+    } finally {
+      child.shutdown();
+    }
+  }
+  
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void newChildInjectorNotLinked() {
+    Injector injector = Guice.createInjector();
+    JerseyGuiceUtils.newChildInjector(injector, JerseyGuiceUtils.newServiceLocator());
+  }
+  
+  private static int count(ServiceLocator locator, Class<?> type) {
+    Filter filter = BuilderHelper.createContractFilter(type.getName());
+    
+    int count = 0;
+    for (ActiveDescriptor<?> descriptor : locator.getDescriptors(filter)) {
+      if (descriptor.getLocatorId() == locator.getLocatorId()) {
+        ++count;
+      }
+    }
+    return count;
+  }
+  
+  @javax.inject.Singleton
+  public static class CommitCounter implements DynamicConfigurationListener {
+    
+    private final AtomicInteger count = new AtomicInteger();
+    
+    @Override
+    public void configurationChanged() {
+      count.incrementAndGet();
+    }
+  }
+  
+  public static class Shared {
+  }
+  
+  public static class Own {
+  }
+  
+  public static class PerRequest {
+  }
+  
+  public static class Other {
+  }
+  
+  public static interface Service {
+  }
+  
+  public static class ServiceA implements Service {
+  }
+  
+  public static class ServiceB implements Service {
+  }
+  
+  public static class NeedsOwn {
+    @javax.inject.Inject
+    Own own;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import javax.annotation.Nullable;
+
+import org.testng.annotations.Test;
+
+import com.google.inject.Inject;
+import com.google.inject.Key;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+public class InjectionPointMetadataTest {
+  
+  @Test
+  public void field() throws Exception {
+    Field field = Target.class.getDeclaredField("value");
+    
+    InjectionPointMetadata metadata = InjectionPointMetadata.get(field, -1);
+    assertSame(InjectionPointMetadata.get(field, -1), metadata);
+    
+    assertTrue(metadata.isGuiceOptional());
+    assertFalse(metadata.isNullable());
+    assertEquals(metadata.getBindingAnnotation(), Names.named("field"));
+    
+    Key<?> key = metadata.getKey(String.class, Collections.<Annotation>emptySet());
+    assertEquals(key, Key.get(String.class, Names.named("field")));
+    assertSame(metadata.getKey(String.class, Collections.<Annotation>emptySet()), key);
+  }
+  
+  @Test
+  public void parameters() throws Exception {
+    Constructor<?> constructor = Target.class.getDeclaredConstructor(String.class, Integer.class);
+    
+    InjectionPointMetadata first = InjectionPointMetadata.get(constructor, 0);
+    assertFalse(first.isGuiceOptional());
+    assertTrue(first.isNullable());
+    assertNull(first.getBindingAnnotation());
+    
+    InjectionPointMetadata second = InjectionPointMetadata.get(constructor, 1);
+    assertFalse(second.isNullable());
+    assertEquals(second.getBindingAnnotation(), Names.named("second"));
+    
+    assertEquals(second.getKey(Integer.class, Collections.<Annotation>emptySet()), 
+        Key.get(Integer.class, Names.named("second")));
+  }
+  
+  static class Target {
+    
+    @Inject(optional = true)
+    @Named("field")
+    private String value;
+    
+    @Inject
+    public Target(@Nullable String first, @Named("second") Integer second) {
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.NamedImpl;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+
+public class LinkModeTest {
+  
+  private static final int COUNT = 2500;
+  
+  private static final Filter GUICE_FILTER 
+      = BuilderHelper.createContractFilter(String.class.getName());
+  
+  @Test
+  public void parallelIsSameAsSequential() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        for (int i = 0; i < COUNT; i++) {
+          bind(String.class).annotatedWith(Names.named("name-" + i)).toInstance("value-" + i);
+        }
+      }
+    });
+    
+    ServiceLocator sequential = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, LinkMode.SEQUENTIAL);
+    
+    ServiceLocator parallel = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, LinkMode.PARALLEL);
+    
+    Set<String> expected = toStrings(sequential.getDescriptors(GUICE_FILTER));
+    Set<String> actual = toStrings(parallel.getDescriptors(GUICE_FILTER));
+    
+    assertTrue(expected.size() >= COUNT);
+    assertEquals(actual, expected);
+    
+    for (int i = 0; i < COUNT; i += 100) {
+      assertEquals(parallel.getService(String.class, "name-" + i), "value-" + i);
+    }
+  }
+  
+  @Test
+  public void lazy() {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        for (int i = 0; i < COUNT; i++) {
+          bind(String.class).annotatedWith(Names.named("name-" + i)).toInstance("value-" + i);
+        }
+        
+        bind(Integer.class).annotatedWith(Names.named("answer")).toInstance(42);
+      }
+    });
+    
+    ServiceLocator lazy = JerseyGuiceUtils.link(
+        JerseyGuiceUtils.newServiceLocator(), injector, LinkMode.LAZY);
+    
+    assertTrue(lazy.getDescriptors(GUICE_FILTER).isEmpty());
+    
+    // The first lookup exports all Strings but nothing else
+    assertEquals(lazy.getService(String.class, new NamedImpl("name-0")), "value-0");
+    assertEquals(lazy.getDescriptors(GUICE_FILTER).size(), COUNT);
+    assertTrue(lazy.getDescriptors(BuilderHelper.createContractFilter(Integer.class.getName())).isEmpty());
+    
+    for (int i = 0; i < COUNT; i += 100) {
+      assertEquals(lazy.getService(String.class, new NamedImpl("name-" + i)), "value-" + i);
+    }
+    
+    assertEquals(lazy.getService(Integer.class, new NamedImpl("answer")), Integer.valueOf(42));
+    assertEquals(lazy.getDescriptors(GUICE_FILTER).size(), COUNT);
+  }
+  
+  private static Set<String> toStrings(List<ActiveDescriptor<?>> descriptors) {
+    Set<String> dst = new HashSet<>();
+    for (ActiveDescriptor<?> descriptor : descriptors) {
+      dst.add(descriptor.getContractTypes() + "@" + descriptor.getName() 
+          + "@" + descriptor.getQualifiers());
+    }
+    return dst;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+
+public class ModuleClassifierTest {
+  
+  @Test
+  public void classify() {
+    ClassLoader classLoader = ModuleClassifierTest.class.getClassLoader();
+    ModuleClassifier classifier = ModuleClassifier.get(classLoader);
+    
+    assertSame(ModuleClassifier.get(classLoader), classifier);
+    
+    // Twice to hit the cache
+    for (int i = 0; i < 2; i++) {
+      assertTrue(classifier.isJerseyModule(JerseyGuiceModule.class.getName()));
+      assertFalse(classifier.isJerseyModule(MyModule.class.getName()));
+      assertFalse(classifier.isJerseyModule("com.example.DoesNotExist"));
+    }
+    
+    assertTrue(ModuleClassifier.get(null).isJerseyModule(JerseyGuiceModule.class.getName()));
+  }
+  
+  private static class MyModule extends AbstractModule {
+    @Override
+    protected void configure() {
+    }
+  }
+}
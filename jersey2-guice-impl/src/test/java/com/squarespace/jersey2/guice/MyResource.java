@@ -19,15 +19,19 @@ package com.squarespace.jersey2.guice;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
 
+import org.glassfish.jersey.server.ContainerRequest;
+
 import com.google.inject.Injector;
 
 // NOTE: This class must be public. Jersey/HK2 will ignore
@@ -67,6 +71,10 @@ public class MyResource {
     
     UriInfo otherInfo = injector.getInstance(UriInfo.class);
     assertEquals(otherInfo.getPath(), info.getPath());
+    assertSame(injector.getInstance(UriInfo.class), otherInfo);
+    
+    // GuiceRequestScopeFilter has put Jersey's request objects into Guice's request scope
+    assertTrue(injector.getInstance(HttpHeaders.class) instanceof ContainerRequest);
     
     return String.format(RESPONSE, value);
   }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.glassfish.hk2.utilities.NamedImpl;
+import org.testng.annotations.Test;
+
+import com.google.inject.BindingAnnotation;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+public class QualifierSetTest {
+  
+  @Test
+  public void named() {
+    Set<Annotation> qualifiers = BindingUtils.getQualifiers(Key.get(String.class, Names.named("a")));
+    QualifierSet set = QualifierSet.of(qualifiers);
+    
+    assertTrue(set.containsAll(Collections.<Annotation>emptySet()));
+    assertTrue(set.containsAll(Collections.singleton(new NamedImpl("a"))));
+    assertTrue(set.contains(new NamedImpl("a")));
+    assertFalse(set.contains(new NamedImpl("b")));
+    assertFalse(set.contains("a"));
+    
+    assertEquals(set, new HashSet<>(qualifiers));
+    assertEquals(set.hashCode(), new HashSet<>(qualifiers).hashCode());
+  }
+  
+  @Test
+  public void guiceQualifier() {
+    Set<Annotation> qualifiers = BindingUtils.getQualifiers(Key.get(String.class, MyBindingAnnotation.class));
+    QualifierSet set = QualifierSet.of(qualifiers);
+    
+    assertTrue(set.iterator().next() instanceof GuiceQualifier<?>);
+    assertTrue(set.containsAll(BindingUtils.getQualifiers(Key.get(String.class, MyBindingAnnotation.class))));
+    assertFalse(set.contains(new NamedImpl("a")));
+  }
+  
+  @Test
+  public void interned() {
+    Key<String> key = Key.get(String.class, MyBindingAnnotation.class);
+    assertSame(GuiceQualifier.of(key), GuiceQualifier.of(Key.get(String.class, MyBindingAnnotation.class)));
+    
+    assertSame(BindingUtils.toThreeThirtyNamed(Names.named("a")), 
+        BindingUtils.toThreeThirtyNamed(Names.named("a")));
+  }
+  
+  @Test
+  public void bounded() {
+    GuiceQualifier.clear();
+    BindingUtils.clear();
+    
+    try {
+      for (int i = 0; i < GuiceQualifier.MAX_INTERNED; i++) {
+        GuiceQualifier.of(Key.get(String.class, Names.named("q-" + i)));
+      }
+      
+      for (int i = 0; i < BindingUtils.MAX_INTERNED_NAMED; i++) {
+        BindingUtils.toThreeThirtyNamed(Names.named("n-" + i));
+      }
+      
+      // They're no longer interned but they still match
+      Key<String> key = Key.get(String.class, MyBindingAnnotation.class);
+      assertNotSame(GuiceQualifier.of(key), GuiceQualifier.of(key));
+      assertEquals(GuiceQualifier.of(key), GuiceQualifier.of(key));
+      
+      javax.inject.Named named = BindingUtils.toThreeThirtyNamed(Names.named("a"));
+      assertNotSame(BindingUtils.toThreeThirtyNamed(Names.named("a")), named);
+      assertTrue(QualifierSet.of(Collections.<Annotation>singleton(named)).contains(
+          BindingUtils.toThreeThirtyNamed(Names.named("a"))));
+      
+    } finally {
+      JerseyGuiceUtils.reset();
+    }
+    
+    // reset() forgets them
+    Key<String> key = Key.get(String.class, MyBindingAnnotation.class);
+    assertSame(GuiceQualifier.of(key), GuiceQualifier.of(key));
+  }
+  
+  @BindingAnnotation
+  @Retention(RetentionPolicy.RUNTIME)
+  public static @interface MyBindingAnnotation {
+  }
+}
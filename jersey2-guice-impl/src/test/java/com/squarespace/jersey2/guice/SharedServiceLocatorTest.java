@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.hk2.api.ActiveDescriptor;
+import org.glassfish.hk2.api.Filter;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorState;
+import org.glassfish.hk2.extension.ServiceLocatorGenerator;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.jersey.process.internal.RequestScope;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.squarespace.jersey2.guice.utils.HttpServer;
+import com.squarespace.jersey2.guice.utils.HttpServerUtils;
+
+public class SharedServiceLocatorTest {
+  
+  @AfterTest
+  public void reset() {
+    JerseyGuiceUtils.reset();
+  }
+  
+  @Test
+  public void sharedParent() throws IOException {
+    final Injector base = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Shared.class).in(Singleton.class);
+      }
+    });
+    
+    final ServiceLocator shared = JerseyGuiceUtils.newSharedServiceLocator("shared-", base);
+    
+    String expected = null;
+    for (int i = 0; i < 2; i++) {
+      final List<ServiceLocator> locators = new ArrayList<>();
+      
+      JerseyGuiceUtils.install(new ServiceLocatorGenerator() {
+        @Override
+        public ServiceLocator create(String name, ServiceLocator parent) {
+          if (!name.startsWith("__HK2_")) {
+            return null;
+          }
+          
+          List<Module> modules = new ArrayList<>();
+          
+          modules.add(new JerseyGuiceModule(name, shared));
+          modules.add(new ServletModule());
+          
+          modules.add(new AbstractModule() {
+            @Override
+            protected void configure() {
+              bind(Own.class);
+              bind(PerRequest.class).in(RequestScoped.class);
+            }
+          });
+          
+          ServiceLocator locator = base.createChildInjector(modules)
+              .getInstance(ServiceLocator.class);
+          
+          locators.add(locator);
+          return locator;
+        }
+      });
+      
+      try (HttpServer server = HttpServerUtils.newHttpServer(SharedResource.class)) {
+        String value = get();
+        
+        if (expected == null) {
+          expected = value;
+        } else {
+          // Both applications see the same Shared singleton
+          assertEquals(value, expected);
+        }
+        
+        int running = 0;
+        for (ServiceLocator locator : locators) {
+          // Jersey shuts down some of its ServiceLocators after startup
+          if (locator.getState() != ServiceLocatorState.RUNNING) {
+            continue;
+          }
+          
+          assertSame(locator.getParent(), shared);
+          
+          // The infrastructure and the common bindings live in the shared parent
+          assertEquals(count(locator, GuiceScopeContext.class), 0);
+          assertEquals(count(locator, Shared.class), 0);
+          assertEquals(count(locator, Own.class), 1);
+          
+          assertSame(locator.getService(Shared.class), base.getInstance(Shared.class));
+          ++running;
+        }
+        
+        assertTrue(running > 0);
+        
+        // The applications' RequestScopes don't leak into the shared parent
+        assertEquals(count(shared, RequestScope.class), 0);
+      }
+    }
+    
+    assertNotNull(expected);
+  }
+  
+  private static String get() {
+    Client client = ClientBuilder.newClient();
+    try {
+      return client.target("http://localhost:" + HttpServerUtils.PORT)
+          .path(SharedResource.PATH)
+          .request(MediaType.TEXT_PLAIN)
+          .get(String.class);
+    } finally {
+      client.close();
+    }
+  }
+  
+  private static int count(ServiceLocator locator, Class<?> type) {
+    Filter filter = BuilderHelper.createContractFilter(type.getName());
+    
+    int count = 0;
+    for (ActiveDescriptor<?> descriptor : locator.getDescriptors(filter)) {
+      if (descriptor.getLocatorId() == locator.getLocatorId()) {
+        ++count;
+      }
+    }
+    return count;
+  }
+  
+  @Path(SharedResource.PATH)
+  public static class SharedResource {
+    
+    public static final String PATH = "/shared";
+    
+    @Inject
+    private Shared shared;
+    
+    @Inject
+    private Own own;
+    
+    @Inject
+    private PerRequest perRequest;
+    
+    @Inject
+    private ServiceLocator locator;
+    
+    @Inject
+    private RequestScope requestScope;
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      assertNotNull(own);
+      
+      // The Guice @RequestScoped binding lives in the application's Jersey RequestScope
+      assertNotNull(perRequest);
+      assertTrue(requestScope.containsKey(locator.getBestDescriptor(
+          BuilderHelper.createContractFilter(PerRequest.class.getName()))));
+      
+      return "Shared: " + System.identityHashCode(shared);
+    }
+  }
+  
+  public static class Shared {
+  }
+  
+  public static class Own {
+  }
+  
+  public static class PerRequest {
+  }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice.load;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.extension.ServiceLocatorGenerator;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.name.Names;
+import com.google.inject.servlet.RequestScoped;
+import com.google.inject.servlet.ServletModule;
+import com.squarespace.jersey2.guice.JerseyGuiceModule;
+import com.squarespace.jersey2.guice.JerseyGuiceUtils;
+import com.squarespace.jersey2.guice.utils.HttpServer;
+import com.squarespace.jersey2.guice.utils.HttpServerUtils;
+import com.squarespace.jersey2.guice.utils.LoadGenerator;
+import com.squarespace.jersey2.guice.utils.LoadReport;
+
+/**
+ * Drives resources with different injection styles through Jetty, {@link com.google.inject.servlet.GuiceFilter}
+ * and Jersey and reports the throughput and the p50/p99/p999 latencies over loopback.
+ * 
+ * <pre>
+ * ./gradlew :jersey2-guice-impl:integrationTest -Dload.threads=8 -Dload.requests=100000
+ * </pre>
+ */
+public class InjectionStylesIT {
+  
+  private static final int THREADS = Integer.getInteger("load.threads", 4);
+  
+  private static final int WARMUPS = Integer.getInteger("load.warmups", 1000);
+  
+  private static final int REQUESTS = Integer.getInteger("load.requests", 10000);
+  
+  private static final String NAME = "InjectionStylesIT.NAME";
+  
+  private static final String VALUE = "Hello, World!";
+  
+  private final CountingInterceptor interceptor = new CountingInterceptor();
+  
+  private final List<LoadReport> reports = new ArrayList<>();
+  
+  private HttpServer server;
+  
+  @BeforeClass
+  public void setUp() throws IOException {
+    final AbstractModule module = new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(SingletonService.class).in(Singleton.class);
+        bind(RequestScopedService.class);
+        bind(String.class).annotatedWith(Names.named(NAME)).toInstance(VALUE);
+        
+        // Resources that are bound in Guice are being instantiated by Guice
+        bind(SingletonResource.class);
+        bind(AopResource.class);
+        
+        bindInterceptor(Matchers.any(), 
+            Matchers.annotatedWith(Intercepted.class), 
+            interceptor);
+      }
+    };
+    
+    JerseyGuiceUtils.install(new ServiceLocatorGenerator() {
+      @Override
+      public ServiceLocator create(String name, ServiceLocator parent) {
+        if (!name.startsWith("__HK2_")) {
+          return null;
+        }
+        
+        List<Module> modules = new ArrayList<>();
+        
+        modules.add(new JerseyGuiceModule(name));
+        modules.add(new ServletModule());
+        modules.add(module);
+        
+        return Guice.createInjector(modules)
+            .getInstance(ServiceLocator.class);
+      }
+    });
+    
+    server = HttpServerUtils.newHttpServer(
+        PlainResource.class,
+        SingletonResource.class, 
+        RequestScopedResource.class, 
+        JitResource.class, 
+        NamedResource.class, 
+        AopResource.class);
+    
+    // Warm up all styles first or the first ones will be measured with a cold JVM
+    LoadGenerator generator = new LoadGenerator(THREADS, WARMUPS, THREADS);
+    for (Object[] style : styles()) {
+      generator.run((String)style[0], url((String)style[1]));
+    }
+  }
+  
+  @AfterClass
+  public void tearDown() throws IOException {
+    try {
+      if (server != null) {
+        server.close();
+      }
+    } finally {
+      JerseyGuiceUtils.reset();
+    }
+    
+    System.out.println(LoadReport.header());
+    for (LoadReport report : reports) {
+      System.out.println(report);
+    }
+  }
+  
+  @DataProvider(name = "styles")
+  public Object[][] styles() {
+    return new Object[][] {
+      { "plain", PlainResource.PATH },
+      { "singleton", SingletonResource.PATH },
+      { "request-scoped", RequestScopedResource.PATH },
+      { "jit", JitResource.PATH },
+      { "named", NamedResource.PATH },
+      { "aop", AopResource.PATH },
+    };
+  }
+  
+  @Test(dataProvider = "styles")
+  public void load(String style, String path) throws IOException {
+    int before = interceptor.counter.get();
+    
+    LoadGenerator generator = new LoadGenerator(THREADS, WARMUPS, REQUESTS);
+    LoadReport report = generator.run(style, url(path));
+    reports.add(report);
+    
+    assertEquals(report.getErrors(), 0, style);
+    assertEquals(report.getRequests(), REQUESTS, style);
+    
+    if (path.equals(AopResource.PATH)) {
+      assertEquals(interceptor.counter.get() - before, THREADS * WARMUPS + REQUESTS);
+    }
+  }
+  
+  private URL url(String path) throws IOException {
+    return new URL("http://localhost:" + server.getPort() + path);
+  }
+  
+  @Path(PlainResource.PATH)
+  public static class PlainResource {
+    
+    public static final String PATH = "/load/plain";
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      return VALUE;
+    }
+  }
+  
+  @Path(SingletonResource.PATH)
+  @Singleton
+  public static class SingletonResource {
+    
+    public static final String PATH = "/load/singleton";
+    
+    @Inject
+    private SingletonService service;
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      return service.get();
+    }
+  }
+  
+  @Path(RequestScopedResource.PATH)
+  public static class RequestScopedResource {
+    
+    public static final String PATH = "/load/request-scoped";
+    
+    @Inject
+    private RequestScopedService service;
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      return service.get();
+    }
+  }
+  
+  @Path(JitResource.PATH)
+  public static class JitResource {
+    
+    public static final String PATH = "/load/jit";
+    
+    @Inject
+    private JitService service;
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      return service.get();
+    }
+  }
+  
+  @Path(NamedResource.PATH)
+  public static class NamedResource {
+    
+    public static final String PATH = "/load/named";
+    
+    @Inject
+    @Named(NAME)
+    private String value;
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public String get() {
+      return value;
+    }
+  }
+  
+  @Path(AopResource.PATH)
+  public static class AopResource {
+    
+    public static final String PATH = "/load/aop";
+    
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    @Intercepted
+    public String get() {
+      return VALUE;
+    }
+  }
+  
+  public static class SingletonService {
+    public String get() {
+      return VALUE;
+    }
+  }
+  
+  @RequestScoped
+  public static class RequestScopedService {
+    public String get() {
+      return VALUE;
+    }
+  }
+  
+  /**
+   * NOTE: This class is not bound in Guice and is being resolved Just-In-Time.
+   */
+  public static class JitService {
+    
+    private final SingletonService service;
+    
+    @Inject
+    public JitService(SingletonService service) {
+      assertNotNull(service);
+      this.service = service;
+    }
+    
+    public String get() {
+      return service.get();
+    }
+  }
+  
+  @Target(ElementType.METHOD)
+  @Retention(RetentionPolicy.RUNTIME)
+  public static @interface Intercepted {
+  }
+  
+  private static class CountingInterceptor implements MethodInterceptor {
+    
+    public final AtomicInteger counter = new AtomicInteger();
+    
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      counter.incrementAndGet();
+      return invocation.proceed();
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 
 public class HttpServer implements Closeable {
 
@@ -29,6 +30,13 @@ public class HttpServer implements Closeable {
     this.server = server;
   }
   
+  /**
+   * Returns the local port the {@link Server} is listening on.
+   */
+  public int getPort() {
+    return ((ServerConnector)server.getConnectors()[0]).getLocalPort();
+  }
+  
   @Override
   public void close() throws IOException {
     try {
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple closed-loop HTTP load generator. Each thread sends its share of 
+ * GET requests back-to-back over a keep-alive connection and records the
+ * latency of every request.
+ * 
+ * @see LoadReport
+ */
+public class LoadGenerator {
+  
+  private static final int BUFFER_SIZE = 4096;
+  
+  private final int threads;
+  
+  private final int warmups;
+  
+  private final int requests;
+  
+  /**
+   * @param threads the number of concurrent clients
+   * @param warmups the number of requests (per thread) that are not being recorded
+   * @param requests the number of requests (in total) that are being recorded
+   */
+  public LoadGenerator(int threads, int warmups, int requests) {
+    if (threads < 1 || warmups < 0 || requests < threads) {
+      throw new IllegalArgumentException("threads=" + threads 
+          + ", warmups=" + warmups + ", requests=" + requests);
+    }
+    
+    this.threads = threads;
+    this.warmups = warmups;
+    this.requests = requests;
+  }
+  
+  /**
+   * Sends the requests to the given {@link URL} and returns a {@link LoadReport}.
+   */
+  public LoadReport run(String name, final URL url) throws IOException {
+    final long[] latencies = new long[requests];
+    final AtomicInteger errors = new AtomicInteger();
+    
+    final CountDownLatch ready = new CountDownLatch(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      
+      for (int i = 0; i < threads; i++) {
+        final int offset = i * (requests / threads);
+        final int count = (i == threads - 1) ? requests - offset : requests / threads;
+        
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            
+            for (int j = 0; j < warmups; j++) {
+              if (!get(url, buffer)) {
+                errors.incrementAndGet();
+              }
+            }
+            
+            ready.countDown();
+            start.await();
+            
+            for (int j = 0; j < count; j++) {
+              long startTime = System.nanoTime();
+              if (!get(url, buffer)) {
+                errors.incrementAndGet();
+              }
+              latencies[offset + j] = System.nanoTime() - startTime;
+            }
+            
+            return null;
+          }
+        }));
+      }
+      
+      ready.await();
+      
+      long startTime = System.nanoTime();
+      start.countDown();
+      
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      
+      long elapsed = System.nanoTime() - startTime;
+      return new LoadReport(name, threads, latencies, errors.get(), elapsed);
+      
+    } catch (InterruptedException err) {
+      Thread.currentThread().interrupt();
+      throw new IOException(err);
+      
+    } catch (ExecutionException err) {
+      throw new IOException(err.getCause());
+      
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  /**
+   * Sends a GET request and reads the response body fully which allows 
+   * {@link HttpURLConnection} to reuse the underlying connection.
+   */
+  private static boolean get(URL url, byte[] buffer) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+    
+    int status = connection.getResponseCode();
+    
+    InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+    if (in != null) {
+      try {
+        while (in.read(buffer) != -1) {
+          // Drain the response body
+        }
+      } finally {
+        in.close();
+      }
+    }
+    
+    return status == HttpURLConnection.HTTP_OK;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2016 Squarespace, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squarespace.jersey2.guice.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and latency distribution of a {@link LoadGenerator} run.
+ */
+public class LoadReport {
+  
+  private final String name;
+  
+  private final int threads;
+  
+  private final long[] latencies;
+  
+  private final int errors;
+  
+  private final long elapsed;
+  
+  LoadReport(String name, int threads, long[] latencies, int errors, long elapsed) {
+    this.name = name;
+    this.threads = threads;
+    this.latencies = latencies.clone();
+    this.errors = errors;
+    this.elapsed = elapsed;
+    
+    Arrays.sort(this.latencies);
+  }
+  
+  public String getName() {
+    return name;
+  }
+  
+  /**
+   * Returns the number of recorded requests.
+   */
+  public int getRequests() {
+    return latencies.length;
+  }
+  
+  /**
+   * Returns the number of requests that didn't return a 200 OK.
+   */
+  public int getErrors() {
+    return errors;
+  }
+  
+  /**
+   * Returns the number of requests per second.
+   */
+  public double getThroughput() {
+    return latencies.length / (elapsed / (double)TimeUnit.SECONDS.toNanos(1L));
+  }
+  
+  /**
+   * Returns the latency (in nanoseconds) at the given percentile (e.g. 99.9).
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("percentile=" + percentile);
+    }
+    
+    if (latencies.length == 0) {
+      return 0L;
+    }
+    
+    int index = (int)Math.ceil(percentile / 100.0 * latencies.length) - 1;
+    return latencies[Math.max(0, index)];
+  }
+  
+  /**
+   * Returns a header for the {@link #toString()} lines.
+   */
+  public static String header() {
+    return String.format("%-16s %7s %8s %6s %12s %10s %10s %10s", 
+        "style", "threads", "requests", "errors", "req/s", "p50 (us)", "p99 (us)", "p999 (us)");
+  }
+  
+  @Override
+  public String toString() {
+    return String.format("%-16s %7d %8d %6d %12.1f %10d %10d %10d", 
+        name, threads, latencies.length, errors, getThroughput(), 
+        toMicros(getPercentile(50.0)), 
+        toMicros(getPercentile(99.0)), 
+        toMicros(getPercentile(99.9)));
+  }
+  
+  private static long toMicros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+}